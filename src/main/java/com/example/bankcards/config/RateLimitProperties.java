@@ -0,0 +1,58 @@
+package com.example.bankcards.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    private long maxKeys = 1_000_000;
+
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    @Valid
+    private List<Rule> rules = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Rule {
+
+        private String name;
+
+        private String pattern;
+
+        private KeyType key = KeyType.IP;
+
+        // Пустое ведро отклоняло бы все запросы, а период пополнения делится на ёмкость
+        @Positive
+        private long capacity;
+
+        @NotNull
+        private Duration refillPeriod = Duration.ofMinutes(1);
+
+        @AssertTrue(message = "refill-period must be positive")
+        boolean isRefillPeriodPositive() {
+            return refillPeriod == null || refillPeriod.toNanos() > 0;
+        }
+    }
+
+    public enum KeyType {
+        IP,
+        EMAIL
+    }
+}
@@ -2,16 +2,20 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.AuthRequest;
 import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.dto.RefreshTokenRequest;
 import com.example.bankcards.exception.AuthenticationException;
+import com.example.bankcards.exception.ServiceOverloadedException;
 import com.example.bankcards.security.AppUserDetails;
 import com.example.bankcards.security.JwtServiceImpl;
 import com.example.bankcards.security.UserDetailsServiceImpl;
+import com.example.bankcards.service.RefreshTokenService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -26,15 +30,18 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final JwtServiceImpl jwtService;
     private final UserDetailsServiceImpl userDetailsService;
+    private final RefreshTokenService refreshTokenService;
 
     @Operation(
             summary = "Аутентификация пользователя",
-            description = "Проверяет учетные данные и возвращает JWT токен при успешной аутентификации"
+            description = "Проверяет учетные данные и возвращает JWT и refresh-токен при успешной аутентификации"
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Успешная аутентификация",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = AuthResponse.class))),
             @ApiResponse(responseCode = "401", description = "Неверный логин или пароль",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Сервис перегружен, повторите попытку позже",
                     content = @Content)
     })
     @PostMapping("/login")
@@ -44,6 +51,8 @@ public class AuthController {
             authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
             );
+        } catch (ServiceOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             throw new AuthenticationException();
         }
@@ -52,6 +61,22 @@ public class AuthController {
 
         String token = jwtService.generateJwtToken(userDetails);
 
-        return new AuthResponse(token);
+        return new AuthResponse(token, refreshTokenService.issue(userDetails.getId()));
+    }
+
+    @Operation(
+            summary = "Обновление JWT токена",
+            description = "Обменивает refresh-токен на новую пару JWT и refresh-токена. " +
+                    "Использованный refresh-токен становится недействительным"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Токены обновлены",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = AuthResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Refresh-токен недействителен, истёк или уже использован",
+                    content = @Content)
+    })
+    @PostMapping("/refresh")
+    public AuthResponse refresh(@RequestBody @Valid RefreshTokenRequest request) {
+        return refreshTokenService.refresh(request.getRefreshToken());
     }
 }
@@ -1,27 +1,43 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.BulkCardRequest;
+import com.example.bankcards.dto.BulkCardResponse;
+import com.example.bankcards.dto.CardExportFormat;
 import com.example.bankcards.dto.CardFilter;
 import com.example.bankcards.dto.CardRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSlice;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.security.AppUserDetails;
+import com.example.bankcards.service.CardExport;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.IdempotencyService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -30,7 +46,13 @@ import java.util.UUID;
 @Tag(name = "Cards", description = "Управление банковскими картами")
 public class CardController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final CardService cardService;
+    private final IdempotencyService idempotencyService;
+
+    @Value("${app.card-export.timeout:30m}")
+    private Duration exportTimeout;
 
     @Operation(summary = "Создание карты")
     @ApiResponse(responseCode = "201", description = "Карта создана",
@@ -41,6 +63,16 @@ public class CardController {
         return cardService.createCard(cardRequest);
     }
 
+    @Operation(summary = "Массовый выпуск карт",
+            description = "Карты фиксируются частями; после первой неудачной части остальные не выпускаются")
+    @ApiResponse(responseCode = "200", description = "Результат по каждой части",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkCardResponse.class)))
+    @ApiResponse(responseCode = "404", description = "Один из пользователей не найден, карты не выпущены")
+    @PostMapping("/bulk")
+    public BulkCardResponse createCards(@RequestBody @Valid BulkCardRequest request) {
+        return cardService.createCards(request);
+    }
+
     @Operation(summary = "Получить карту по ID")
     @ApiResponse(responseCode = "200", description = "Карта найдена",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardResponse.class)))
@@ -62,6 +94,44 @@ public class CardController {
         return cardService.getAllCards(cardFilter);
     }
 
+    @Operation(summary = "Получить все карты постранично по курсору",
+            description = "Карты упорядочены по сроку действия и ID; следующая страница запрашивается с cursor=nextCursor. "
+                    + "Время ответа не зависит от глубины страницы")
+    @ApiResponse(responseCode = "200", description = "Страница карт",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardSlice.class)))
+    @ApiResponse(responseCode = "400", description = "Некорректный курсор")
+    @GetMapping("/scroll")
+    public CardSlice scrollAllCards(CardFilter cardFilter) {
+        return cardService.scrollAllCards(cardFilter);
+    }
+
+    @Operation(summary = "Выгрузить все карты по фильтру",
+            description = "Карты передаются потоком в порядке срока действия и ID, без пагинации; "
+                    + "параметры страницы и курсора не используются")
+    @ApiResponse(responseCode = "200", description = "Карты в формате NDJSON или CSV",
+            content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")})
+    @ApiResponse(responseCode = "429", description = "Одновременно выполняется слишком много выгрузок")
+    @GetMapping("/export")
+    public WebAsyncTask<Void> exportCards(
+            @Parameter(description = "Формат выгрузки") @RequestParam(defaultValue = "NDJSON") CardExportFormat format,
+            CardFilter cardFilter,
+            @Parameter(hidden = true) HttpServletResponse response) {
+        CardExport export = cardService.exportCards(cardFilter, format);
+        response.setContentType(format.getMediaType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("cards." + format.getFileExtension())
+                .build()
+                .toString());
+        // Большой выгрузке не хватает общего таймаута асинхронных запросов, поэтому у неё свой
+        WebAsyncTask<Void> task = new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+            export.writeTo(response.getOutputStream());
+            return null;
+        });
+        // Место выгрузки освобождается, даже если запись не успела начаться до таймаута или ошибки
+        task.onCompletion(export::close);
+        return task;
+    }
+
     @Operation(summary = "Заблокировать карту")
     @ApiResponse(responseCode = "200", description = "Карта заблокирована",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardResponse.class)))
@@ -78,6 +148,16 @@ public class CardController {
         return cardService.activateCard(cardId);
     }
 
+    @Operation(summary = "Задать число полос баланса карты",
+            description = "Зачисления на карту распределяются по полосам, чтобы одновременные переводы не ждали друг друга; 0 — без полос")
+    @ApiResponse(responseCode = "200", description = "Число полос изменено",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardResponse.class)))
+    @ApiResponse(responseCode = "400", description = "Недопустимое число полос")
+    @PutMapping("/{cardId}/stripes")
+    public CardResponse setBalanceStripes(@PathVariable UUID cardId, @RequestParam int count) {
+        return cardService.setBalanceStripes(cardId, count);
+    }
+
     @Operation(summary = "Удалить карту по ID")
     @ApiResponse(responseCode = "204", description = "Карта удалена")
     @DeleteMapping("/{id}")
@@ -96,6 +176,16 @@ public class CardController {
         return cardService.getAllMyCards(userId, cardFilter);
     }
 
+    @Operation(summary = "Получить свои карты постранично по курсору")
+    @ApiResponse(responseCode = "200", description = "Страница карт текущего пользователя",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardSlice.class)))
+    @ApiResponse(responseCode = "400", description = "Некорректный курсор")
+    @GetMapping("/my/scroll")
+    public CardSlice scrollAllMyCards(CardFilter cardFilter) {
+        UUID currentUserId = getCurrentUserIdFromSecurityContext();
+        return cardService.scrollAllMyCards(currentUserId, cardFilter);
+    }
+
     @Operation(summary = "Запрос на блокировку карты (пользовательский)")
     @ApiResponse(responseCode = "200", description = "Запрос на блокировку отправлен")
     @PutMapping("/{cardId}/request-block")
@@ -106,10 +196,46 @@ public class CardController {
 
     @Operation(summary = "Перевод между своими картами")
     @ApiResponse(responseCode = "200", description = "Перевод выполнен")
+    @ApiResponse(responseCode = "409", description = "Запрос с этим ключом идемпотентности ещё выполняется")
+    @ApiResponse(responseCode = "422", description = "Ключ идемпотентности уже использован для другого запроса")
+    @ApiResponse(responseCode = "500", description = "Исход перевода неизвестен: проверьте историю карты перед повтором")
+    @ApiResponse(responseCode = "503", description = "Очередь переводов переполнена, повторите позже")
     @PostMapping("/transfer")
-    public void transferBetweenMyCards(@RequestBody TransferRequest request) {
+    public CompletableFuture<Void> transferBetweenMyCards(
+            @Parameter(description = "Ключ идемпотентности: повтор с тем же ключом не выполняет перевод повторно")
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid TransferRequest request) {
         UUID currentUserId = getCurrentUserIdFromSecurityContext();
-        cardService.transferBetweenMyCards(request, currentUserId);
+        if (idempotencyKey == null) {
+            // При включённом секвенсоре ответ отправляется после группового коммита, поток запроса не ждёт
+            return cardService.transferBetweenMyCardsAsync(request, currentUserId);
+        }
+        idempotencyService.execute(currentUserId, idempotencyKey, "transfer", request, Void.class, recordResult -> {
+            cardService.transferBetweenMyCards(request, currentUserId, () -> recordResult.accept(null));
+            return null;
+        });
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Operation(summary = "Пакетный перевод между своими картами",
+            description = "Все переводы выполняются в одной транзакции; при allOrNothing=false применяются только успешные")
+    @ApiResponse(responseCode = "200", description = "Результат по каждому переводу",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchTransferResponse.class)))
+    @ApiResponse(responseCode = "409", description = "Запрос с этим ключом идемпотентности ещё выполняется")
+    @ApiResponse(responseCode = "422", description = "Ключ идемпотентности уже использован для другого запроса")
+    @ApiResponse(responseCode = "500", description = "Исход пакета неизвестен: проверьте историю карт перед повтором")
+    @PostMapping("/transfers/batch")
+    public BatchTransferResponse transferBatchBetweenMyCards(
+            @Parameter(description = "Ключ идемпотентности: повтор с тем же ключом возвращает сохранённый результат")
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid BatchTransferRequest request) {
+        UUID currentUserId = getCurrentUserIdFromSecurityContext();
+        if (idempotencyKey == null) {
+            return cardService.transferBatchBetweenMyCards(request, currentUserId);
+        }
+        return idempotencyService.execute(currentUserId, idempotencyKey, "transfer-batch", request,
+                BatchTransferResponse.class,
+                recordResult -> cardService.transferBatchBetweenMyCards(request, currentUserId, recordResult));
     }
 
     @Operation(summary = "Получить баланс своей карты")
@@ -8,10 +8,13 @@ import lombok.Setter;
 @Getter
 @Setter
 @AllArgsConstructor
-@Schema(description = "Ответ после успешной аутентификации с JWT токеном")
+@Schema(description = "Ответ после успешной аутентификации с JWT и refresh-токеном")
 public class AuthResponse {
 
     @Schema(description = "JWT токен для аутентификации", example = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
     private String token;
 
+    @Schema(description = "Одноразовый refresh-токен для получения нового JWT", example = "3q2-7wEAAAAAAAAAbmV3LXJlZnJlc2gtdG9rZW4")
+    private String refreshToken;
+
 }
@@ -0,0 +1,24 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "Пакет переводов между своими картами")
+public class BatchTransferRequest {
+
+    @NotEmpty
+    @Size(max = 1000)
+    @Valid
+    @Schema(description = "Переводы в порядке применения", required = true)
+    private List<TransferRequest> transfers;
+
+    @Schema(description = "Применить все переводы или ни одного; при false применяются только успешные",
+            example = "true", defaultValue = "true")
+    private boolean allOrNothing = true;
+}
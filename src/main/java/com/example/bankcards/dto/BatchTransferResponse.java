@@ -0,0 +1,27 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Результат пакетного перевода")
+public class BatchTransferResponse {
+
+    @Schema(description = "Изменения балансов зафиксированы", example = "true")
+    private boolean committed;
+
+    @Schema(description = "Количество применённых переводов", example = "99")
+    private int succeeded;
+
+    @Schema(description = "Количество отклонённых переводов", example = "1")
+    private int failed;
+
+    @Schema(description = "Результаты в порядке запроса")
+    private List<TransferResult> results;
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "Запрос на массовый выпуск карт")
+public class BulkCardRequest {
+
+    @NotEmpty
+    @Size(max = 100_000)
+    @Valid
+    @Schema(description = "Карты в порядке выпуска", required = true)
+    private List<@NotNull CardRequest> cards;
+}
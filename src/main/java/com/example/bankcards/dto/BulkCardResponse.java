@@ -0,0 +1,24 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Результат массового выпуска карт")
+public class BulkCardResponse {
+
+    @Schema(description = "Количество выпущенных карт", example = "9000")
+    private int created;
+
+    @Schema(description = "Количество карт в отменённых частях", example = "1000")
+    private int failed;
+
+    @Schema(description = "Результаты по частям в порядке запроса")
+    private List<CardChunkResult> chunks;
+}
@@ -0,0 +1,31 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Результат одной части массового выпуска, зафиксированной отдельной транзакцией")
+public class CardChunkResult {
+
+    @Schema(description = "Позиция первой карты части в запросе (с 0)", example = "0")
+    private int offset;
+
+    @Schema(description = "Количество карт в части", example = "1000")
+    private int size;
+
+    @Schema(description = "Карты части зафиксированы", example = "true")
+    private boolean committed;
+
+    @Schema(description = "ID выпущенных карт в порядке запроса; пусто, если часть отменена")
+    private List<UUID> cardIds;
+
+    @Schema(description = "Причина отмены части", example = "Connection is closed")
+    private String error;
+}
@@ -0,0 +1,42 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.repository.CardView;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Позиция в выдаче карт, упорядоченной по (expirationDate, id): ключ последней отданной карты.
+ * Клиенту передаётся как непрозрачная строка.
+ */
+public record CardCursor(LocalDate expirationDate, UUID id) {
+
+    public static CardCursor after(CardView card) {
+        return new CardCursor(card.expirationDate(), card.id());
+    }
+
+    // null — первая страница
+    public static CardCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 2) {
+                throw new InvalidCursorException();
+            }
+            return new CardCursor(LocalDate.parse(parts[0]), UUID.fromString(parts[1]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((expirationDate + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,10 +1,10 @@
 package com.example.bankcards.dto;
 
 import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.UUID;
 
@@ -17,13 +17,20 @@ import java.util.UUID;
 public class CardFilter {
 
     @Builder.Default
-    @Schema(description = "Размер страницы", example = "5")
+    @Schema(description = "Размер страницы; при выдаче по курсору не больше 1000", example = "5")
     private Integer pageSize = 5;
 
     @Builder.Default
     @Schema(description = "Номер страницы (нумерация с 0)", example = "0")
     private Integer pageNumber = 0;
 
+    @Schema(description = "Курсор из nextCursor предыдущей страницы; используется вместо pageNumber", example = "MjAyOC0wMS0zMXwzZmE4NWY2NA")
+    private String cursor;
+
+    @Builder.Default
+    @Schema(description = "Посчитать общее число карт по фильтру (дополнительный запрос COUNT)", example = "false")
+    private Boolean includeTotal = false;
+
     @Schema(description = "ID карты", example = "3fa85f64-5717-4562-b3fc-2c963f66afa6")
     private UUID id;
 
@@ -42,9 +49,9 @@ public class CardFilter {
     @Schema(description = "Статус карты", example = "ACTIVE")
     private CardStatus status;
 
-    @Schema(description = "Минимальный баланс карты", example = "1000.00")
-    private BigDecimal balanceFrom;
+    @Schema(description = "Минимальный баланс карты с учётом полос", type = "number", example = "1000.00")
+    private Money balanceFrom;
 
-    @Schema(description = "Максимальный баланс карты", example = "10000.00")
-    private BigDecimal balanceTo;
+    @Schema(description = "Максимальный баланс карты с учётом полос", type = "number", example = "10000.00")
+    private Money balanceTo;
 }
@@ -1,6 +1,9 @@
 package com.example.bankcards.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,6 +20,10 @@ public class CardRequest {
     @Schema(description = "ID пользователя, которому принадлежит карта", example = "3fa85f64-5717-4562-b3fc-2c963f66afa6", required = true)
     private UUID userId;
 
+    // Money хранит копейки в long: больше двух знаков после запятой или 15 целых не принимаем
+    @NotNull
+    @PositiveOrZero
+    @Digits(integer = 15, fraction = 2)
     @Schema(description = "Начальный баланс карты", example = "5000.00", required = true)
     private BigDecimal balance;
 }
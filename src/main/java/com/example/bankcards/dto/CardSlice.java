@@ -0,0 +1,27 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Страница карт с курсором продолжения")
+public class CardSlice {
+
+    @Schema(description = "Карты страницы")
+    private List<CardResponse> content;
+
+    @Schema(description = "Курсор следующей страницы; null — страница последняя", example = "MjAyOC0wMS0zMXwzZmE4NWY2NA")
+    private String nextCursor;
+
+    @Schema(description = "Есть ли следующая страница", example = "true")
+    private boolean hasNext;
+
+    @Schema(description = "Общее число карт по фильтру; заполняется только при includeTotal=true", example = "1250")
+    private Long totalElements;
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Запрос на обновление JWT токена")
+public class RefreshTokenRequest {
+
+    @NotBlank
+    @Schema(description = "Refresh-токен, полученный при входе или предыдущем обновлении",
+            example = "3q2-7wEAAAAAAAAAbmV3LXJlZnJlc2gtdG9rZW4", required = true)
+    private String refreshToken;
+}
@@ -0,0 +1,29 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Результат одного перевода из пакета")
+public class TransferResult {
+
+    public enum Status {
+        SUCCESS,
+        FAILED,
+        NOT_APPLIED
+    }
+
+    @Schema(description = "Позиция перевода в запросе (с 0)", example = "0")
+    private int index;
+
+    @Schema(description = "Итог: SUCCESS, FAILED или NOT_APPLIED (пакет отменён из-за ошибки в другом переводе)",
+            example = "SUCCESS")
+    private Status status;
+
+    @Schema(description = "Причина ошибки", example = "Insufficient funds on the card")
+    private String error;
+}
@@ -2,6 +2,7 @@ package com.example.bankcards.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -33,6 +34,23 @@ public class Card {
     @Column(nullable = false)
     private CardStatus status;
 
+    @Convert(converter = MoneyConverter.class)
     @Column(nullable = false)
-    private BigDecimal balance;
+    private Money balance;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // Число полос баланса меняется только через CardBalanceStripes
+    @Column(name = "stripe_count", nullable = false, updatable = false)
+    private int stripeCount;
+
+    // Зачисления, ещё не свёрнутые из полос в balance
+    @Formula("(CASE WHEN stripe_count > 0 THEN (SELECT COALESCE(SUM(s.balance), 0) FROM card_balance_stripes s WHERE s.card_id = id) ELSE 0 END)")
+    private BigDecimal stripedBalance;
+
+    public Money getTotalBalance() {
+        return stripedBalance == null || stripedBalance.signum() == 0 ? balance : balance.plus(Money.of(stripedBalance));
+    }
 }
@@ -0,0 +1,171 @@
+package com.example.bankcards.entity;
+
+import com.example.bankcards.util.MoneyDeserializer;
+import com.example.bankcards.util.MoneySerializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Денежная сумма в минимальных единицах валюты (копейках) и код валюты.
+ * Сложение и сравнение идут на long с проверкой переполнения, без промежуточных BigDecimal.
+ * Масштаб фиксирован — два знака после запятой, как у столбцов NUMERIC(19,2); суммы дальше
+ * ±92 233 720 368 547 758.07 в long не помещаются и отклоняются с ArithmeticException.
+ */
+@JsonSerialize(using = MoneySerializer.class)
+@JsonDeserialize(using = MoneyDeserializer.class)
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final String DEFAULT_CURRENCY = "RUB";
+    public static final Money ZERO = new Money(0, DEFAULT_CURRENCY);
+
+    private static final long MINOR_UNITS_PER_MAJOR = 100;
+
+    private final long minorUnits;
+    private final String currency;
+
+    private Money(long minorUnits, String currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits, DEFAULT_CURRENCY);
+    }
+
+    public static Money ofMinor(long minorUnits, String currency) {
+        if (currency == null || !currency.matches("[A-Z]{3}")) {
+            throw new IllegalArgumentException("Currency must be an ISO 4217 code: " + currency);
+        }
+        return DEFAULT_CURRENCY.equals(currency) ? ofMinor(minorUnits) : new Money(minorUnits, currency);
+    }
+
+    public static Money of(long major) {
+        return ofMinor(Math.multiplyExact(major, MINOR_UNITS_PER_MAJOR));
+    }
+
+    // Дробная часть длиннее двух знаков (кроме нулей) — ArithmeticException, а не округление
+    public static Money of(BigDecimal amount) {
+        return ofMinor(amount.movePointRight(SCALE).longValueExact());
+    }
+
+    /**
+     * Разбирает сумму вида "-1234.5" без создания BigDecimal.
+     */
+    public static Money parse(String text) {
+        String value = text.trim();
+        int position = 0;
+        boolean negative = false;
+        if (!value.isEmpty() && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            position = 1;
+        }
+
+        long units = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; position < value.length(); position++) {
+            char c = value.charAt(position);
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid money amount: " + text);
+            }
+            if (fractionDigits >= 0 && ++fractionDigits > SCALE) {
+                throw new ArithmeticException("Money amount has more than " + SCALE + " fraction digits: " + text);
+            }
+            units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+            digits++;
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid money amount: " + text);
+        }
+
+        for (int scale = Math.max(fractionDigits, 0); scale < SCALE; scale++) {
+            units = Math.multiplyExact(units, 10);
+        }
+        return ofMinor(negative ? -units : units);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public Money plus(Money other) {
+        checkSameCurrency(other);
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        checkSameCurrency(other);
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money negate() {
+        return ofMinor(Math.negateExact(minorUnits), currency);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isLessThan(Money other) {
+        return compareTo(other) < 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    private void checkSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money money)) {
+            return false;
+        }
+        return minorUnits == money.minorUnits && currency.equals(money.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minorUnits, currency);
+    }
+
+    // Число с двумя знаками после запятой, например "-0.05"
+    @Override
+    public String toString() {
+        String digits = Long.toString(minorUnits);
+        int start = minorUnits < 0 ? 1 : 0;
+        StringBuilder result = new StringBuilder(digits.length() + 3);
+        result.append(digits, 0, start);
+        for (int i = digits.length() - start; i <= SCALE; i++) {
+            result.append('0');
+        }
+        result.append(digits, start, digits.length());
+        result.insert(result.length() - SCALE, '.');
+        return result.toString();
+    }
+}
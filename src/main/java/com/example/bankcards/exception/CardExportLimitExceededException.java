@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class CardExportLimitExceededException extends RuntimeException {
+    public CardExportLimitExceededException() {
+        super("Too many card exports are running, please retry later.");
+    }
+}
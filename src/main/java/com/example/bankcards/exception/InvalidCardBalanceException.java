@@ -0,0 +1,10 @@
+package com.example.bankcards.exception;
+
+import java.math.BigDecimal;
+
+public class InvalidCardBalanceException extends RuntimeException {
+    public InvalidCardBalanceException(int position, BigDecimal balance) {
+        super("Card at position " + position + " has invalid balance " + balance
+                + ": expected a non-negative amount with at most 2 decimals");
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class InvalidIdempotencyKeyException extends RuntimeException {
+    public InvalidIdempotencyKeyException() {
+        super("Idempotency-Key must be 1 to 255 characters long.");
+    }
+}
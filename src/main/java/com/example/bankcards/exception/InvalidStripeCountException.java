@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class InvalidStripeCountException extends RuntimeException {
+    public InvalidStripeCountException(int maxStripes) {
+        super("Stripe count must be between 0 and " + maxStripes + ".");
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class InvalidTransferAmountException extends RuntimeException {
+    public InvalidTransferAmountException() {
+        super("Transfer amount must be positive");
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.bankcards.exception;
+
+public class OperationOutcomeUnknownException extends RuntimeException {
+    public OperationOutcomeUnknownException() {
+        super("The outcome of the operation is unknown, check the card history before retrying.");
+    }
+
+    public OperationOutcomeUnknownException(Throwable cause) {
+        super("The outcome of the operation is unknown, check the card history before retrying.", cause);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class TransferConflictException extends RuntimeException {
+    public TransferConflictException() {
+        super("The transfer conflicted with concurrent card updates, please retry.");
+    }
+}
@@ -1,14 +1,64 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface CardRepository extends JpaRepository<Card, UUID>, JpaSpecificationExecutor<Card> {
+public interface CardRepository extends JpaRepository<Card, UUID>, JpaSpecificationExecutor<Card>, CardRepositoryCustom {
 
     Optional<Card> findByIdAndUserId(UUID id, UUID userId);
 
+    @Query("select c.id from Card c where c.user.id = :userId")
+    List<UUID> findIdsByUserId(@Param("userId") UUID userId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("""
+            select new com.example.bankcards.repository.CardView(
+                   c.id, c.number, c.expirationDate, c.status, c.balance, c.stripedBalance)
+              from Card c
+             where c.id = :id
+            """)
+    Optional<CardView> findViewById(@Param("id") UUID id);
+
+    // Блокировки строк берутся одним запросом в порядке id, поэтому встречные переводы не создают deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids and c.user.id = :userId order by c.id")
+    List<Card> findAllByIdInAndUserIdForUpdate(@Param("ids") Collection<UUID> ids, @Param("userId") UUID userId);
+
+    // Таймаут ожидания блокировки действует до конца текущей транзакции
+    @Query(value = "SELECT set_config('lock_timeout', :timeout, true)", nativeQuery = true)
+    String setLockTimeout(@Param("timeout") String timeout);
+
+    // Списание проходит только для активной карты владельца с достаточным балансом; 0 строк — перевод невозможен
+    @Modifying
+    @Query(value = """
+            UPDATE cards
+               SET balance = balance - :amount, version = version + 1
+             WHERE id = :id AND user_id = :userId AND status = 'ACTIVE' AND balance >= :amount
+            """, nativeQuery = true)
+    int debitIfActiveAndSufficient(@Param("id") UUID id, @Param("userId") UUID userId,
+                                   @Param("amount") BigDecimal amount);
+
+    // Карты с полосами баланса сюда не подходят: зачисление на них идёт через CardBalanceStripes
+    @Modifying
+    @Query(value = """
+            UPDATE cards
+               SET balance = balance + :amount, version = version + 1
+             WHERE id = :id AND user_id = :userId AND status = 'ACTIVE' AND stripe_count = 0
+            """, nativeQuery = true)
+    int creditIfActive(@Param("id") UUID id, @Param("userId") UUID userId, @Param("amount") BigDecimal amount);
 }
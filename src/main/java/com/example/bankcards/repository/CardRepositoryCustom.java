@@ -0,0 +1,31 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardCursor;
+import com.example.bankcards.entity.Card;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface CardRepositoryCustom {
+
+    /**
+     * Страница карт по фильтру в виде CardView. COUNT выполняется по тем же правилам, что и в findAll.
+     */
+    Page<CardView> findViews(Specification<Card> spec, Pageable pageable);
+
+    /**
+     * Первые limit карт по фильтру в порядке (expirationDate, id), строго после курсора.
+     * Без OFFSET и COUNT: время запроса не зависит от глубины страницы.
+     */
+    List<CardView> findAfter(Specification<Card> spec, CardCursor after, int limit);
+
+    /**
+     * Все карты по фильтру в порядке (expirationDate, id), читаемые курсором по fetchSize строк.
+     * Вызывать внутри транзакции: без неё драйвер PostgreSQL загрузит весь результат сразу.
+     * Поток нужно закрыть.
+     */
+    Stream<CardView> streamViews(Specification<Card> spec, int fetchSize);
+}
@@ -0,0 +1,122 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardCursor;
+import com.example.bankcards.entity.Card;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CompoundSelection;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+class CardRepositoryCustomImpl implements CardRepositoryCustom {
+
+    private static final String FIELD_ID = "id";
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Page<CardView> findViews(Specification<Card> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CardView> query = cb.createQuery(CardView.class);
+        Root<Card> root = query.from(Card.class);
+
+        query.select(view(root, cb)).where(filter(spec, root, query, cb));
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+        TypedQuery<CardView> typedQuery = readOnly(entityManager.createQuery(query));
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(typedQuery.getResultList(), pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<CardView> findAfter(Specification<Card> spec, CardCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CardView> query = cb.createQuery(CardView.class);
+        Root<Card> root = query.from(Card.class);
+        Path<LocalDate> expirationDate = root.get(CardSpecification.FIELD_EXPIRATION_DATE);
+        Path<UUID> id = root.get(FIELD_ID);
+
+        List<Predicate> predicates = new ArrayList<>(List.of(filter(spec, root, query, cb)));
+        if (after != null) {
+            // Первое условие задаёт начало диапазона индекса, второе отсекает уже отданные карты с той же датой
+            predicates.add(cb.greaterThanOrEqualTo(expirationDate, after.expirationDate()));
+            predicates.add(cb.or(
+                    cb.greaterThan(expirationDate, after.expirationDate()),
+                    cb.greaterThan(id, after.id())));
+        }
+
+        query.select(view(root, cb))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(cb.asc(expirationDate), cb.asc(id));
+        return readOnly(entityManager.createQuery(query))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<CardView> streamViews(Specification<Card> spec, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CardView> query = cb.createQuery(CardView.class);
+        Root<Card> root = query.from(Card.class);
+
+        // Порядок индекса: первые строки приходят без сортировки всей выборки
+        query.select(view(root, cb))
+                .where(filter(spec, root, query, cb))
+                .orderBy(cb.asc(root.get(CardSpecification.FIELD_EXPIRATION_DATE)), cb.asc(root.get(FIELD_ID)));
+        return readOnly(entityManager.createQuery(query))
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+
+    private long count(Specification<Card> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Card> root = query.from(Card.class);
+        query.select(cb.count(root)).where(filter(spec, root, query, cb));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    // Пустая конъюнкция вместо null, чтобы условие можно было передать в where и дополнить
+    private static Predicate filter(Specification<Card> spec, Root<Card> root, CriteriaQuery<?> query,
+                                    CriteriaBuilder cb) {
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        return predicate == null ? cb.conjunction() : predicate;
+    }
+
+    // Набор полей совпадает с конструктором CardView
+    private static CompoundSelection<CardView> view(Root<Card> root, CriteriaBuilder cb) {
+        return cb.construct(CardView.class,
+                root.get(FIELD_ID),
+                root.get("number"),
+                root.get(CardSpecification.FIELD_EXPIRATION_DATE),
+                root.get("status"),
+                root.get(CardSpecification.FIELD_BALANCE),
+                root.get(CardSpecification.FIELD_STRIPED_BALANCE));
+    }
+
+    // У DTO снимков и так нет; подсказка сохраняет режим только для чтения, если в выборку добавят сущность
+    private static <T> TypedQuery<T> readOnly(TypedQuery<T> query) {
+        return query.setHint(HibernateHints.HINT_READ_ONLY, true);
+    }
+}
@@ -3,13 +3,17 @@ package com.example.bankcards.repository;
 import com.example.bankcards.dto.CardFilter;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+import jakarta.persistence.criteria.Expression;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.math.BigDecimal;
 import java.util.UUID;
 
 public interface CardSpecification {
 
     String FIELD_BALANCE = "balance";
+    String FIELD_STRIPED_BALANCE = "stripedBalance";
     String FIELD_EXPIRATION_DATE = "expirationDate";
 
     static Specification<Card> withFilter(CardFilter cardFilter) {
@@ -20,7 +24,7 @@ public interface CardSpecification {
         spec = and(spec, byUserId(cardFilter.getUserId() != null ? cardFilter.getUserId() : null));
         spec = and(spec, byRange(FIELD_EXPIRATION_DATE, cardFilter.getExpirationDateFrom(), cardFilter.getExpirationDateTo()));
         spec = and(spec, byStatus(cardFilter.getStatus()));
-        spec = and(spec, byRange(FIELD_BALANCE, cardFilter.getBalanceFrom(), cardFilter.getBalanceTo()));
+        spec = and(spec, byTotalBalance(cardFilter.getBalanceFrom(), cardFilter.getBalanceTo()));
 
         return spec;
     }
@@ -49,6 +53,20 @@ public interface CardSpecification {
                 status == null ? null : cb.equal(root.get("status"), status);
     }
 
+    // Баланс, который видит клиент: cards.balance вместе с ещё не свёрнутыми полосами (см. Card.getTotalBalance)
+    static Specification<Card> byTotalBalance(Money from, Money to) {
+        return (root, query, cb) -> {
+            if (from == null && to == null) return null;
+            Expression<BigDecimal> total = cb.sum(
+                    root.get(FIELD_BALANCE).as(BigDecimal.class), root.<BigDecimal>get(FIELD_STRIPED_BALANCE));
+            if (from != null && to != null)
+                return cb.between(total, from.toBigDecimal(), to.toBigDecimal());
+            if (from != null)
+                return cb.greaterThanOrEqualTo(total, from.toBigDecimal());
+            return cb.lessThanOrEqualTo(total, to.toBigDecimal());
+        };
+    }
+
     static <T extends Comparable<? super T>> Specification<Card> byRange(String fieldName, T from, T to) {
         return (root, query, cb) -> {
             if (from == null && to == null) return null;
@@ -0,0 +1,109 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardTransaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface CardTransactionRepository extends JpaRepository<CardTransaction, Long> {
+
+    interface LedgerMismatch {
+        UUID getCardId();
+
+        BigDecimal getCardBalance();
+
+        BigDecimal getLedgerBalance();
+    }
+
+    // Последняя контрольная точка не позже :at плюс короткий хвост операций, не вошедших в неё.
+    // Учтённые точкой операции не позже её as_of, поэтому в хвост попадают только неучтённые
+    @Query(value = """
+            SELECT COALESCE(cp.balance, 0) + COALESCE((
+                       SELECT SUM(t.amount)
+                         FROM card_transactions t
+                        WHERE t.card_id = :cardId
+                          AND t.xact_id >= COALESCE(cp.watermark, 0)
+                          AND t.created_at <= :at), 0)
+              FROM (SELECT 1) dummy
+              LEFT JOIN LATERAL (
+                   SELECT balance, watermark
+                     FROM card_balance_checkpoints
+                    WHERE card_id = :cardId AND as_of <= :at
+                    ORDER BY watermark DESC
+                    LIMIT 1) cp ON true
+            """, nativeQuery = true)
+    BigDecimal getBalanceAsOf(@Param("cardId") UUID cardId, @Param("at") LocalDateTime at);
+
+    @Query(value = "SELECT MAX(watermark) FROM card_balance_checkpoints", nativeQuery = true)
+    Optional<Long> findLatestCheckpointWatermark();
+
+    /**
+     * Граница зафиксированных данных: все транзакции с меньшим id уже завершены,
+     * поэтому операции ниже неё больше не появятся.
+     */
+    @Query(value = "SELECT CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS text) AS bigint)",
+            nativeQuery = true)
+    long findCommitWatermark();
+
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryAdvisoryLock(@Param("key") long key);
+
+    /**
+     * Новая контрольная точка для каждой карты с операциями в окне: предыдущая точка плюс сумма окна.
+     * Окна идут подряд по id транзакций, поэтому операции карты ниже окна уже учтены предыдущей точкой.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO card_balance_checkpoints (card_id, watermark, as_of, balance, created_at)
+            SELECT t.card_id,
+                   :windowEnd,
+                   GREATEST(prev.as_of, MAX(t.created_at)),
+                   COALESCE(prev.balance, 0) + SUM(t.amount),
+                   now()
+              FROM card_transactions t
+              LEFT JOIN LATERAL (
+                   SELECT cp.balance, cp.as_of
+                     FROM card_balance_checkpoints cp
+                    WHERE cp.card_id = t.card_id
+                    ORDER BY cp.watermark DESC
+                    LIMIT 1) prev ON true
+             WHERE t.xact_id >= :windowStart AND t.xact_id < :windowEnd
+             GROUP BY t.card_id, prev.balance, prev.as_of
+            """, nativeQuery = true)
+    int createCheckpoints(@Param("windowStart") long windowStart, @Param("windowEnd") long windowEnd);
+
+    // Один запрос — один снимок данных: баланс карты (с полосами) и журнал сравниваются согласованно
+    @Query(value = """
+            SELECT c.id AS cardId,
+                   c.balance + COALESCE(st.amount, 0) AS cardBalance,
+                   COALESCE(cp.balance, 0) + COALESCE(tail.amount, 0) AS ledgerBalance
+              FROM cards c
+              LEFT JOIN LATERAL (
+                   SELECT SUM(s.balance) AS amount
+                     FROM card_balance_stripes s
+                    WHERE s.card_id = c.id) st ON true
+              LEFT JOIN LATERAL (
+                   SELECT balance, watermark
+                     FROM card_balance_checkpoints
+                    WHERE card_id = c.id
+                    ORDER BY watermark DESC
+                    LIMIT 1) cp ON true
+              LEFT JOIN LATERAL (
+                   SELECT SUM(t.amount) AS amount
+                     FROM card_transactions t
+                    WHERE t.card_id = c.id
+                      AND t.xact_id >= COALESCE(cp.watermark, 0)) tail ON true
+             WHERE c.id IN (SELECT DISTINCT w.card_id
+                              FROM card_transactions w
+                             WHERE w.xact_id >= :windowStart AND w.xact_id < :windowEnd)
+               AND c.balance + COALESCE(st.amount, 0) <> COALESCE(cp.balance, 0) + COALESCE(tail.amount, 0)
+            """, nativeQuery = true)
+    List<LedgerMismatch> findMismatches(@Param("windowStart") long windowStart, @Param("windowEnd") long windowEnd);
+}
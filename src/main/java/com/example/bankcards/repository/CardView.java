@@ -0,0 +1,24 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Карта только для чтения: выбирается конструктором в запросе, не попадает в контекст персистентности
+ * и не хранит снимок для dirty checking. Поля совпадают с тем, что нужно CardResponse.
+ */
+public record CardView(UUID id,
+                       String number,
+                       LocalDate expirationDate,
+                       CardStatus status,
+                       Money balance,
+                       BigDecimal stripedBalance) {
+
+    public Money totalBalance() {
+        return stripedBalance == null || stripedBalance.signum() == 0 ? balance : balance.plus(Money.of(stripedBalance));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, UUID> {
+
+    Optional<IdempotencyKey> findByUserIdAndKey(UUID userId, String key);
+
+    // Захват ключа: 1 — ключ новый или его аренда истекла (владелец упал), 0 — ключ занят или завершён.
+    // Чужую аренду перехватывает только тот же запрос, иначе вызывающий получит несовпадение хэша.
+    // id строки — токен захвата: при перехвате он меняется, и прежний владелец уже не сможет завершить ключ
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (id, user_id, idempotency_key, request_hash, status, created_at, expires_at)
+            VALUES (:id, :userId, :key, :requestHash, 'IN_PROGRESS', :createdAt, :expiresAt)
+            ON CONFLICT (user_id, idempotency_key) DO UPDATE
+                SET id = EXCLUDED.id, created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at
+                WHERE idempotency_keys.status = 'IN_PROGRESS'
+                  AND idempotency_keys.expires_at < EXCLUDED.created_at
+                  AND idempotency_keys.request_hash = EXCLUDED.request_hash
+            """, nativeQuery = true)
+    int tryClaim(@Param("id") UUID id,
+                 @Param("userId") UUID userId,
+                 @Param("key") String key,
+                 @Param("requestHash") String requestHash,
+                 @Param("createdAt") LocalDateTime createdAt,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Завершение ключа его владельцем; вызывается в транзакции действия, чтобы результат зафиксировался вместе с ним.
+    // 0 — захват перехвачен или ключ уже не выполняется
+    @Transactional
+    @Modifying
+    @Query("""
+            update IdempotencyKey k set k.status = :status, k.responseBody = :responseBody, k.expiresAt = :expiresAt
+            where k.id = :id and k.status = :claimedStatus
+            """)
+    int complete(@Param("id") UUID id,
+                 @Param("claimedStatus") IdempotencyKey.Status claimedStatus,
+                 @Param("status") IdempotencyKey.Status status,
+                 @Param("responseBody") String responseBody,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Продление аренды выполняющихся ключей их владельцем
+    @Transactional
+    @Modifying
+    @Query("""
+            update IdempotencyKey k set k.expiresAt = :expiresAt
+            where k.id in :ids and k.status = :status
+            """)
+    int extendLeases(@Param("ids") Collection<UUID> ids,
+                     @Param("status") IdempotencyKey.Status status,
+                     @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.id = :id and k.status = :status")
+    int release(@Param("id") UUID id, @Param("status") IdempotencyKey.Status status);
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
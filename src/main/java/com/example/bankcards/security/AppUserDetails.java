@@ -21,17 +21,28 @@ public class AppUserDetails implements UserDetails {
     private final String email;
     private final String password;
     private final List<SimpleGrantedAuthority> authorities;
+    private final int tokenVersion;
 
     public AppUserDetails(User user) {
         this.userId = user.getId();
         this.email = user.getEmail();
         this.password = user.getPassword();
         this.authorities = Collections.singletonList(new SimpleGrantedAuthority(user.getRole().name()));
+        this.tokenVersion = user.getTokenVersion();
     }
+
+    public AppUserDetails(UUID userId, String email, String password, List<SimpleGrantedAuthority> authorities) {
+        this(userId, email, password, authorities, 0);
+    }
+
     public UUID getId(){
         return userId;
     }
 
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -28,25 +28,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
 
         String token = getTokenFromRequest(request);
-        if (token != null && jwtService.validate(token)) {
-            String username = jwtService.getUsername(token);
-
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                AppUserDetails userDetails = (AppUserDetails) userDetailsService.loadUserByUsername(username);
+        if (token != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            jwtService.parseClaims(token)
+                    .ifPresent(claims -> authenticate(claims, request));
+        }
 
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities()
-                );
+        filterChain.doFilter(request, response);
+    }
 
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+    private void authenticate(JwtClaims claims, HttpServletRequest request) {
+        if (claims.subject() == null) {
+            return;
+        }
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-            }
+        AppUserDetails userDetails = userDetailsService.loadUserByClaims(claims);
+        if (userDetails == null) {
+            return;
         }
 
-        filterChain.doFilter(request, response);
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities()
+        );
+
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+        SecurityContextHolder.getContext().setAuthentication(authentication);
     }
 
     private String getTokenFromRequest(HttpServletRequest request) {
@@ -0,0 +1,15 @@
+package com.example.bankcards.security;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Проверенные данные JWT токена. Создаётся только после успешной проверки подписи.
+ */
+public record JwtClaims(String subject, UUID userId, List<String> roles, int tokenVersion, Instant expiresAt) {
+
+    public JwtClaims {
+        roles = roles == null ? List.of() : List.copyOf(roles);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.bankcards.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Учитывает отклонённые JWT токены. Каждая причина считается в метриках,
+ * а в лог попадает не больше одной записи на причину за интервал и периодическая сводка.
+ */
+@Slf4j
+@Component
+public class JwtRejectionTracker {
+
+    public enum Reason {
+        INVALID_SIGNATURE,
+        MALFORMED,
+        UNSUPPORTED,
+        EXPIRED,
+        INVALID_CLAIMS
+    }
+
+    private final Map<Reason, Counter> counters = new EnumMap<>(Reason.class);
+    private final Map<Reason, LongAdder> intervalCounts = new EnumMap<>(Reason.class);
+    private final Map<Reason, AtomicLong> lastLoggedNanos = new EnumMap<>(Reason.class);
+    private final long sampleIntervalNanos;
+
+    public JwtRejectionTracker(MeterRegistry meterRegistry,
+                               @Value("${app.jwt.rejection-log.sample-interval:10s}") Duration sampleInterval) {
+        this.sampleIntervalNanos = sampleInterval.toNanos();
+        long initial = System.nanoTime() - sampleIntervalNanos;
+        for (Reason reason : Reason.values()) {
+            counters.put(reason, Counter.builder("app.jwt.rejected")
+                    .description("Отклонённые JWT токены")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(meterRegistry));
+            intervalCounts.put(reason, new LongAdder());
+            lastLoggedNanos.put(reason, new AtomicLong(initial));
+        }
+    }
+
+    public void reject(Reason reason, String detail) {
+        counters.get(reason).increment();
+        intervalCounts.get(reason).increment();
+
+        // Истёкшие токены — штатный трафик, они попадают только в счётчики и сводку
+        if (reason == Reason.EXPIRED) {
+            return;
+        }
+
+        AtomicLong lastLogged = lastLoggedNanos.get(reason);
+        long previous = lastLogged.get();
+        long now = System.nanoTime();
+        if (now - previous >= sampleIntervalNanos && lastLogged.compareAndSet(previous, now)) {
+            log.warn("JWT rejected ({}): {}; further rejections are summarized", reason, detail);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.rejection-log.summary-interval-ms:60000}")
+    public void logSummary() {
+        StringJoiner summary = new StringJoiner(", ");
+        long total = 0;
+        for (Map.Entry<Reason, LongAdder> entry : intervalCounts.entrySet()) {
+            long count = entry.getValue().sumThenReset();
+            if (count > 0) {
+                summary.add(entry.getKey().name().toLowerCase() + "=" + count);
+                total += count;
+            }
+        }
+        if (total > 0) {
+            log.info("JWT rejections since last summary: {} ({})", total, summary);
+        }
+    }
+}
@@ -1,77 +1,183 @@
 package com.example.bankcards.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.SignatureException;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.time.Duration;
-import java.util.Date;
+import java.time.Instant;
+import java.util.*;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class JwtServiceImpl {
 
+    private static final String CLAIM_USER_ID = "userId";
+    private static final String CLAIM_ROLES = "roles";
+    private static final String CLAIM_TOKEN_VERSION = "ver";
+    private static final String AUTHORITY_KEY = "authority";
+    // Приблизительный размер записи кэша без учёта самого токена: ключ, JwtClaims, служебные структуры
+    private static final int CLAIMS_CACHE_ENTRY_OVERHEAD_BYTES = 256;
+
+    private final JwtRejectionTracker rejectionTracker;
+
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
     @Value("${app.jwt.tokenExpiration}")
     private Duration tokenExpiration;
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+    @Value("${app.jwt.claims-cache.enabled:true}")
+    private boolean claimsCacheEnabled;
+
+    @Value("${app.jwt.claims-cache.max-memory:32MB}")
+    private DataSize claimsCacheMaxMemory;
+
+    private Key signingKey;
+    private JwtParser jwtParser;
+    private Cache<String, JwtClaims> claimsCache;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+
+        if (claimsCacheEnabled) {
+            claimsCache = Caffeine.newBuilder()
+                    .maximumWeight(claimsCacheMaxMemory.toBytes())
+                    .weigher((String token, JwtClaims claims) -> token.length() * 2 + CLAIMS_CACHE_ENTRY_OVERHEAD_BYTES)
+                    .expireAfter(new TokenExpiry())
+                    .build();
+        }
     }
+
     public String generateJwtToken(AppUserDetails userDetails) {
+        List<String> roles = userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
+
         return Jwts.builder()
                 .setSubject(userDetails.getUsername())
-                .claim("userId", userDetails.getId())
-                .claim("roles", userDetails.getAuthorities())
+                .claim(CLAIM_USER_ID, userDetails.getId())
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_TOKEN_VERSION, userDetails.getTokenVersion())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + tokenExpiration.toMillis()))
                 .setHeaderParam("typ", "JWT")
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Проверяет подпись токена один раз и возвращает его данные.
+     * Пустой результат означает, что токен невалиден.
+     */
+    public Optional<JwtClaims> parseClaims(String token) {
+        if (claimsCache != null && token != null) {
+            JwtClaims cached = claimsCache.getIfPresent(token);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+
+        try {
+            JwtClaims claims = toJwtClaims(jwtParser.parseClaimsJws(token).getBody());
+            if (claimsCache != null) {
+                claimsCache.put(token, claims);
+            }
+            return Optional.of(claims);
+        } catch (SignatureException e) {
+            rejectionTracker.reject(JwtRejectionTracker.Reason.INVALID_SIGNATURE, e.getMessage());
+        } catch (MalformedJwtException e) {
+            rejectionTracker.reject(JwtRejectionTracker.Reason.MALFORMED, e.getMessage());
+        } catch (UnsupportedJwtException e) {
+            rejectionTracker.reject(JwtRejectionTracker.Reason.UNSUPPORTED, e.getMessage());
+        } catch (ExpiredJwtException e) {
+            rejectionTracker.reject(JwtRejectionTracker.Reason.EXPIRED, null);
+        } catch (IllegalArgumentException e) {
+            rejectionTracker.reject(JwtRejectionTracker.Reason.INVALID_CLAIMS, e.getMessage());
+        }
+        return Optional.empty();
+    }
+
     public String getUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token)
+                .map(JwtClaims::subject)
+                .orElse(null);
     }
 
     public boolean validate(String authToken) {
-        boolean result = true;
+        return parseClaims(authToken).isPresent();
+    }
 
-        try {
+    private JwtClaims toJwtClaims(Claims claims) {
+        Object userId = claims.get(CLAIM_USER_ID);
+        Object tokenVersion = claims.get(CLAIM_TOKEN_VERSION);
+        return new JwtClaims(
+                claims.getSubject(),
+                userId != null ? UUID.fromString(userId.toString()) : null,
+                toRoles(claims.get(CLAIM_ROLES)),
+                tokenVersion instanceof Number number ? number.intValue() : 0,
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null
+        );
+    }
+
+    // Старые токены содержат роли в виде объектов {"authority": "..."}, новые — в виде строк
+    private List<String> toRoles(Object rawRoles) {
+        if (!(rawRoles instanceof Collection<?> collection)) {
+            return List.of();
+        }
+        List<String> roles = new ArrayList<>(collection.size());
+        for (Object role : collection) {
+            if (role instanceof Map<?, ?> map) {
+                Object authority = map.get(AUTHORITY_KEY);
+                if (authority != null) {
+                    roles.add(authority.toString());
+                }
+            } else if (role != null) {
+                roles.add(role.toString());
+            }
+        }
+        return roles;
+    }
 
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(authToken);
+    /**
+     * Запись кэша живёт ровно до истечения срока действия самого токена.
+     * Ключом служит полный токен, поэтому совпадение хеша не может подменить проверку подписи.
+     */
+    private static final class TokenExpiry implements Expiry<String, JwtClaims> {
 
-        } catch (SignatureException e) {
-            log.error("Invalid signature: {}", e.getMessage());
-            result = false;
-        } catch (MalformedJwtException e) {
-            log.error("Invalid token: {}", e.getMessage());
-            result = false;
-        } catch (UnsupportedJwtException e) {
-            log.error("Token not supported: {}", e.getMessage());
-            result = false;
-        } catch (ExpiredJwtException e) {
-            log.error("Token expired");
-            result = false;
+        @Override
+        public long expireAfterCreate(String token, JwtClaims claims, long currentTime) {
+            if (claims.expiresAt() == null) {
+                return 0;
+            }
+            return Math.max(0, Duration.between(Instant.now(), claims.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, JwtClaims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, claims, currentTime);
         }
 
-        return result;
+        @Override
+        public long expireAfterRead(String token, JwtClaims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,128 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.RateLimitProperties;
+import com.example.bankcards.dto.ErrorResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает частоту запросов по правилам из app.rate-limit.rules.
+ * Ключ правила — IP клиента или email из JSON тела запроса. IP за балансировщиком восстанавливается
+ * из X-Forwarded-For на уровне Tomcat (server.forward-headers-strategy). Для правил по email тело должно иметь
+ * Content-Length не больше 16 КБ: иначе запрос отклоняется, а не пропускается мимо ограничения.
+ */
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final long MAX_BODY_SIZE = 16 * 1024;
+    private static final String EMAIL_FIELD = "email";
+
+    private final RateLimitProperties properties;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public RateLimitFilter(RateLimitProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.rateLimiter = new TokenBucketRateLimiter(properties.getMaxKeys(), properties.getIdleTimeout());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !properties.isEnabled() || properties.getRules().isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+
+        HttpServletRequest currentRequest = request;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+
+        for (RateLimitProperties.Rule rule : properties.getRules()) {
+            if (!pathMatcher.match(rule.getPattern(), path)) {
+                continue;
+            }
+
+            String key;
+            if (rule.getKey() == RateLimitProperties.KeyType.EMAIL) {
+                long contentLength = currentRequest.getContentLengthLong();
+                if (contentLength < 0) {
+                    meterRegistry.counter("app.ratelimit.rejected", "rule", rule.getName()).increment();
+                    reject(response, HttpStatus.LENGTH_REQUIRED, "Content-Length is required.");
+                    return;
+                }
+                if (contentLength > MAX_BODY_SIZE) {
+                    meterRegistry.counter("app.ratelimit.rejected", "rule", rule.getName()).increment();
+                    reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request body is too large.");
+                    return;
+                }
+                if (!(currentRequest instanceof CachedBodyHttpServletRequest) && contentLength > 0) {
+                    currentRequest = new CachedBodyHttpServletRequest(currentRequest);
+                }
+                key = extractEmail(currentRequest);
+            } else {
+                key = request.getRemoteAddr();
+            }
+
+            if (key == null) {
+                continue;
+            }
+
+            long waitNanos = rateLimiter.tryAcquire(rule.getName() + ':' + key, rule.getCapacity(), rule.getRefillPeriod());
+            if (waitNanos > 0) {
+                meterRegistry.counter("app.ratelimit.rejected", "rule", rule.getName()).increment();
+                reject(response, waitNanos);
+                return;
+            }
+        }
+
+        filterChain.doFilter(currentRequest, response);
+    }
+
+    private String extractEmail(HttpServletRequest request) {
+        if (!(request instanceof CachedBodyHttpServletRequest cachedRequest)) {
+            return null;
+        }
+        try {
+            JsonNode email = objectMapper.readTree(cachedRequest.getBody()).get(EMAIL_FIELD);
+            return email != null && email.isTextual() ? email.asText().toLowerCase(Locale.ROOT) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        reject(response, HttpStatus.TOO_MANY_REQUESTS, "Too many requests, please retry later.");
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(status.value(), message));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Token bucket на каждый ключ. Корзины хранятся в ограниченном по размеру кэше
+ * и удаляются после периода неактивности.
+ */
+public class TokenBucketRateLimiter {
+
+    private final Cache<String, TokenBucket> buckets;
+
+    public TokenBucketRateLimiter(long maxKeys, Duration idleTimeout) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    /**
+     * @return 0, если токен получен, иначе время ожидания следующего токена в наносекундах
+     */
+    public long tryAcquire(String key, long capacity, Duration refillPeriod) {
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(capacity, refillPeriod));
+        return bucket.tryConsume(System.nanoTime());
+    }
+
+    private static final class TokenBucket {
+
+        private final long capacity;
+        private final double nanosPerToken;
+        private double tokens;
+        private long lastRefillNanos;
+
+        private TokenBucket(long capacity, Duration refillPeriod) {
+            this.capacity = capacity;
+            this.nanosPerToken = (double) refillPeriod.toNanos() / capacity;
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        private synchronized long tryConsume(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / nanosPerToken);
+            lastRefillNanos = now;
+
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * nanosPerToken);
+        }
+    }
+}
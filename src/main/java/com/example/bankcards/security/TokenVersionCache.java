@@ -0,0 +1,42 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+@Component
+public class TokenVersionCache {
+
+    private static final int MISSING_USER = -1;
+
+    private final UserRepository userRepository;
+    private final Cache<UUID, Integer> versions;
+
+    public TokenVersionCache(UserRepository userRepository,
+                             @Value("${app.jwt.token-version-cache.max-size:100000}") long maxSize,
+                             @Value("${app.jwt.token-version-cache.ttl:30s}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public boolean isCurrent(UUID userId, int tokenVersion) {
+        int current = versions.get(userId, id -> userRepository.findTokenVersionById(id).orElse(MISSING_USER));
+        return current != MISSING_USER && current == tokenVersion;
+    }
+
+    public void evict(UUID userId) {
+        versions.invalidate(userId);
+    }
+
+    public void evictAll() {
+        versions.invalidateAll();
+    }
+}
@@ -3,19 +3,108 @@ package com.example.bankcards.security;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import com.example.bankcards.service.impl.CacheInvalidationBus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Service
-@RequiredArgsConstructor
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final TokenVersionCache tokenVersionCache;
+    private final Cache<String, AppUserDetails> userDetailsCache;
+    // Растёт при каждом сбросе: загрузка, которую сброс мог не увидеть, не остаётся в кэше
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Value("${app.jwt.stateless:false}")
+    private boolean stateless;
+
+    public UserDetailsServiceImpl(UserRepository userRepository,
+                                  TokenVersionCache tokenVersionCache,
+                                  CacheInvalidationBus cacheInvalidationBus,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.security.user-cache.max-size:10000}") long maxSize,
+                                  @Value("${app.security.user-cache.ttl:5m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.tokenVersionCache = tokenVersionCache;
+        this.userDetailsCache = CaffeineCacheMetrics.monitor(
+                meterRegistry,
+                Caffeine.newBuilder()
+                        .maximumSize(maxSize)
+                        .expireAfterWrite(ttl)
+                        .recordStats()
+                        .<String, AppUserDetails>build(),
+                "userDetails"
+        );
+        cacheInvalidationBus.subscribe(CacheInvalidationBus.Topic.USER, new CacheInvalidationBus.Subscriber() {
+            @Override
+            public void evict(Collection<UUID> ids) {
+                ids.forEach(UserDetailsServiceImpl.this::evictUser);
+            }
+
+            @Override
+            public void evictAll() {
+                evictions.incrementAndGet();
+                tokenVersionCache.evictAll();
+                userDetailsCache.invalidateAll();
+            }
+        });
+    }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UserNotFoundException {
+        long evictionsBefore = evictions.get();
+        AppUserDetails details = userDetailsCache.get(email, this::loadFromDatabase);
+        // Обход в evictUser не видит загрузку, которая ещё идёт: если сброс был, запись убирает сам загрузчик
+        if (evictions.get() != evictionsBefore) {
+            userDetailsCache.asMap().remove(email, details);
+        }
+        return details;
+    }
+
+    /**
+     * В stateless-режиме пользователь строится из проверенных данных токена без запроса в БД.
+     * Возвращает null, если токен отозван изменением или удалением пользователя.
+     */
+    public AppUserDetails loadUserByClaims(JwtClaims claims) {
+        if (!stateless || claims.userId() == null) {
+            return (AppUserDetails) loadUserByUsername(claims.subject());
+        }
+
+        if (!tokenVersionCache.isCurrent(claims.userId(), claims.tokenVersion())) {
+            return null;
+        }
+
+        return new AppUserDetails(
+                claims.userId(),
+                claims.subject(),
+                null,
+                claims.roles().stream().map(SimpleGrantedAuthority::new).toList(),
+                claims.tokenVersion()
+        );
+    }
+
+    // Кэш ограничен по размеру, поэтому поиск записей пользователя по ID допустим на редком пути изменения
+    public void evictUser(UUID userId) {
+        // Счётчик увеличивается до обхода, иначе загрузка могла бы завершиться между ними незамеченной
+        evictions.incrementAndGet();
+        tokenVersionCache.evict(userId);
+        userDetailsCache.asMap().values().removeIf(details -> userId.equals(details.getId()));
+    }
+
+    private AppUserDetails loadFromDatabase(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UserNotFoundException(email));
 
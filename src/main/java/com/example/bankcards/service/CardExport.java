@@ -0,0 +1,13 @@
+package com.example.bankcards.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Выгрузка карт, занявшая одно из ограниченного числа мест. Место освобождается по окончании записи
+ * или вызовом close, если запись так и не началась; повторный close ничего не делает.
+ */
+public interface CardExport extends StreamingResponseBody, AutoCloseable {
+
+    @Override
+    void close();
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+public interface CardLedgerService {
+
+    void recordOpening(UUID cardId, BigDecimal balance);
+
+    void recordOpenings(Map<UUID, BigDecimal> balances);
+
+    void recordTransfer(UUID fromCardId, UUID toCardId, BigDecimal amount);
+
+    BigDecimal getBalanceAsOf(UUID cardId, LocalDateTime at);
+}
@@ -1,35 +1,64 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.BulkCardRequest;
+import com.example.bankcards.dto.BulkCardResponse;
+import com.example.bankcards.dto.CardExportFormat;
 import com.example.bankcards.dto.CardFilter;
 import com.example.bankcards.dto.CardRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSlice;
 import com.example.bankcards.dto.TransferRequest;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Service
 public interface CardService {
 
     CardResponse createCard(CardRequest cardRequest);
 
+    BulkCardResponse createCards(BulkCardRequest request);
+
     CardResponse getCardById(UUID id);
 
     Page<CardResponse> getAllCards(CardFilter cardFilter);
 
+    CardSlice scrollAllCards(CardFilter cardFilter);
+
+    CardExport exportCards(CardFilter cardFilter, CardExportFormat format);
+
     CardResponse blockCard(UUID cardId);
 
     CardResponse activateCard(UUID cardId);
 
     void deleteCard(UUID id);
 
+    CardResponse setBalanceStripes(UUID cardId, int stripeCount);
+
     Page<CardResponse> getAllMyCards(UUID userId, CardFilter cardFilter);
 
+    CardSlice scrollAllMyCards(UUID userId, CardFilter cardFilter);
+
     void requestCardBlock(UUID cardId, UUID currentUserId);
 
     void transferBetweenMyCards(TransferRequest request, UUID currentUserId);
 
+    // onApplied выполняется в транзакции, применившей перевод
+    void transferBetweenMyCards(TransferRequest request, UUID currentUserId, Runnable onApplied);
+
+    CompletableFuture<Void> transferBetweenMyCardsAsync(TransferRequest request, UUID currentUserId);
+
+    BatchTransferResponse transferBatchBetweenMyCards(BatchTransferRequest request, UUID currentUserId);
+
+    // onApplied получает ответ в транзакции, применившей пакет
+    BatchTransferResponse transferBatchBetweenMyCards(BatchTransferRequest request, UUID currentUserId,
+                                                      Consumer<BatchTransferResponse> onApplied);
+
     BigDecimal getMyCardBalance(UUID cardId, UUID currentUserId);
 }
@@ -0,0 +1,21 @@
+package com.example.bankcards.service;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public interface IdempotencyService {
+
+    /**
+     * Выполняет действие не более одного раза для пары (пользователь, ключ). Повтор с тем же ключом
+     * и тем же запросом возвращает сохранённый результат, с другим запросом — отклоняется.
+     * Действие передаёт результат в recordResult внутри транзакции, которая применяет изменения,
+     * поэтому ключ завершается атомарно с ними. Действие, вернувшее результат без вызова recordResult,
+     * ничего не изменило.
+     */
+    <T> T execute(UUID userId, String key, String operation, Object request, Class<T> resultType, Action<T> action);
+
+    @FunctionalInterface
+    interface Action<T> {
+        T run(Consumer<T> recordResult);
+    }
+}
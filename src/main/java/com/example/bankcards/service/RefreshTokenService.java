@@ -0,0 +1,14 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.AuthResponse;
+
+import java.util.UUID;
+
+public interface RefreshTokenService {
+
+    String issue(UUID userId);
+
+    AuthResponse refresh(String refreshToken);
+
+    void revokeAll(UUID userId);
+}
@@ -0,0 +1,298 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.util.TransactionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рассылка ключей изменённых сущностей между экземплярами приложения через LISTEN/NOTIFY PostgreSQL.
+ * publish только откладывает ключи до коммита изменяющей транзакции: NOTIFY берёт общую для базы
+ * блокировку на время коммита и сериализовал бы коммиты всех переводов. Накопленные ключи отправляет
+ * фоновый поток раз в publish-interval одной короткой транзакцией. Локальные кэши узла-отправителя
+ * очищаются самим кодом записи после коммита, поэтому свои уведомления узел пропускает.
+ * Уведомления принимает отдельный поток на собственном соединении вне пула. Пока соединения нет,
+ * уведомления теряются, поэтому после каждого (пере)подключения кэши подписчиков очищаются полностью.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationBus {
+
+    public enum Topic {
+        CARD,
+        USER
+    }
+
+    public interface Subscriber {
+
+        void evict(Collection<UUID> ids);
+
+        void evictAll();
+    }
+
+    // Полезная нагрузка NOTIFY ограничена 8000 байтами
+    private static final int MAX_PAYLOAD_LENGTH = 7_900;
+    private static final int ID_LENGTH = 36;
+    private static final String SEPARATOR = ";";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final boolean enabled;
+    private final String channel;
+    private final Duration pollTimeout;
+    private final Duration reconnectDelay;
+    private final Duration publishInterval;
+    private final Map<Topic, List<Subscriber>> subscribers = new EnumMap<>(Topic.class);
+    private final Map<Topic, Set<UUID>> outbox = new EnumMap<>(Topic.class);
+    private final Counter published;
+    private final Counter received;
+    private final Counter flushes;
+
+    private volatile boolean running;
+    private Thread listener;
+    private ScheduledExecutorService publisher;
+
+    public CacheInvalidationBus(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                DataSourceProperties dataSourceProperties,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.cache-invalidation.enabled:true}") boolean enabled,
+                                @Value("${app.cache-invalidation.channel:bankcards_cache}") String channel,
+                                @Value("${app.cache-invalidation.poll-timeout:10s}") Duration pollTimeout,
+                                @Value("${app.cache-invalidation.reconnect-delay:1s}") Duration reconnectDelay,
+                                @Value("${app.cache-invalidation.publish-interval:50ms}") Duration publishInterval) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid notification channel: " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dataSourceProperties = dataSourceProperties;
+        this.enabled = enabled;
+        this.channel = channel;
+        this.pollTimeout = pollTimeout;
+        this.reconnectDelay = reconnectDelay;
+        this.publishInterval = publishInterval;
+        for (Topic topic : Topic.values()) {
+            subscribers.put(topic, new CopyOnWriteArrayList<>());
+            outbox.put(topic, new LinkedHashSet<>());
+        }
+        this.published = Counter.builder("app.cache.invalidation.published")
+                .description("Отправленные уведомления об изменении сущностей")
+                .register(meterRegistry);
+        this.received = Counter.builder("app.cache.invalidation.received")
+                .description("Уведомления других узлов, по которым очищены локальные кэши")
+                .register(meterRegistry);
+        this.flushes = Counter.builder("app.cache.invalidation.flushes")
+                .description("Полные очистки кэшей после подключения слушателя")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+        publisher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "cache-invalidation-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher.scheduleWithFixedDelay(this::flush, publishInterval.toMillis(), publishInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        log.info("Cache invalidation listens on channel {} as node {}", channel, nodeId);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (publisher != null) {
+            publisher.shutdown();
+            publisher.awaitTermination(publishInterval.plusSeconds(1).toMillis(), TimeUnit.MILLISECONDS);
+            // Ключи, закоммиченные после последней отправки, не должны пропасть при остановке узла
+            flush();
+        }
+        if (listener != null) {
+            listener.interrupt();
+            listener.join(pollTimeout.plusSeconds(1).toMillis());
+        }
+    }
+
+    public void subscribe(Topic topic, Subscriber subscriber) {
+        subscribers.get(topic).add(subscriber);
+    }
+
+    /**
+     * Уведомляет другие узлы об изменении сущностей после коммита текущей транзакции, при откате
+     * ключи отбрасываются. Без транзакции ключи сразу попадают в очередь на отправку.
+     */
+    public void publish(Topic topic, Collection<UUID> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        List<UUID> committed = List.copyOf(ids);
+        TransactionUtil.afterCommit(() -> {
+            synchronized (outbox) {
+                outbox.get(topic).addAll(committed);
+            }
+        });
+    }
+
+    public void publish(Topic topic, UUID id) {
+        publish(topic, List.of(id));
+    }
+
+    /**
+     * Отправляет накопленные ключи одной транзакцией. При ошибке ключи возвращаются в очередь
+     * и уходят следующей отправкой.
+     */
+    void flush() {
+        Map<Topic, List<UUID>> batch = new EnumMap<>(Topic.class);
+        synchronized (outbox) {
+            outbox.forEach((topic, ids) -> {
+                if (!ids.isEmpty()) {
+                    batch.put(topic, List.copyOf(ids));
+                    ids.clear();
+                }
+            });
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> payloads = new ArrayList<>();
+            batch.forEach((topic, ids) -> payloads.addAll(payloads(topic, ids)));
+            transactionTemplate.executeWithoutResult(status -> payloads.forEach(payload ->
+                    jdbcTemplate.query("SELECT pg_notify(?, ?)", (RowCallbackHandler) rs -> { }, channel, payload)));
+            published.increment(payloads.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish cache invalidations, retrying in {}", publishInterval, e);
+            synchronized (outbox) {
+                batch.forEach((topic, ids) -> outbox.get(topic).addAll(ids));
+            }
+        }
+    }
+
+    // Полезная нагрузка: узел;тема;id,id,...
+    private List<String> payloads(Topic topic, List<UUID> ids) {
+        String header = nodeId + SEPARATOR + topic + SEPARATOR;
+        int idsPerPayload = (MAX_PAYLOAD_LENGTH - header.length()) / (ID_LENGTH + 1);
+        List<String> payloads = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += idsPerPayload) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + idsPerPayload, ids.size()));
+            payloads.add(header + String.join(",", chunk.stream().map(UUID::toString).toList()));
+        }
+        return payloads;
+    }
+
+    void handle(String payload) {
+        String[] parts = payload.split(SEPARATOR, 3);
+        if (parts.length != 3) {
+            log.warn("Ignoring malformed cache invalidation payload: {}", payload);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            Topic topic = Topic.valueOf(parts[1]);
+            List<UUID> ids = new ArrayList<>();
+            for (String id : parts[2].split(",")) {
+                ids.add(UUID.fromString(id));
+            }
+            subscribers.get(topic).forEach(subscriber -> subscriber.evict(ids));
+            received.increment();
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed cache invalidation payload: {}", payload);
+        }
+    }
+
+    void flushAll() {
+        subscribers.values().forEach(topicSubscribers -> topicSubscribers.forEach(Subscriber::evictAll));
+        flushes.increment();
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = openConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                // Уведомления, отправленные до LISTEN, до этого узла не дошли
+                flushAll();
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollTimeout.toMillis());
+                    if (notifications == null || notifications.length == 0) {
+                        // Тишина не должна скрывать оборванное соединение
+                        if (!connection.isValid((int) Math.max(1, pollTimeout.toSeconds()))) {
+                            throw new SQLException("Listener connection is no longer valid");
+                        }
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handle(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation listener lost its connection, reconnecting in {}", reconnectDelay, e);
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        Properties properties = new Properties();
+        if (dataSourceProperties.determineUsername() != null) {
+            properties.setProperty("user", dataSourceProperties.determineUsername());
+        }
+        if (dataSourceProperties.determinePassword() != null) {
+            properties.setProperty("password", dataSourceProperties.determinePassword());
+        }
+        properties.setProperty("tcpKeepAlive", "true");
+        properties.setProperty("ApplicationName", "bank-cards-cache-listener");
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.exception.InvalidStripeCountException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Полосы баланса для «горячих» карт, на которые одновременно зачисляют много переводов.
+ * Зачисление попадает в одну из stripe_count строк card_balance_stripes, поэтому конкурирующие переводы
+ * блокируют разные строки, а не одну строку cards. Баланс карты — cards.balance плюс сумма полос;
+ * полосы сворачиваются в cards.balance по расписанию, а при нехватке средств — прямо при списании.
+ */
+@Component
+@Slf4j
+public class CardBalanceStripes {
+
+    public static final int MAX_STRIPES = 64;
+
+    private static final String CREDIT_SQL = """
+            UPDATE card_balance_stripes s
+               SET balance = s.balance + ?
+              FROM cards c
+             WHERE c.id = ? AND c.user_id = ? AND c.status = 'ACTIVE' AND c.stripe_count > 0
+               AND s.card_id = c.id AND s.stripe = mod(?, c.stripe_count)
+            """;
+
+    // Один запрос: блокирует непустые полосы, обнуляет их и переносит сумму в cards.balance
+    private static final String FOLD_SQL = """
+            WITH folded AS (
+                 UPDATE card_balance_stripes s
+                    SET balance = 0
+                   FROM (SELECT stripe, balance
+                           FROM card_balance_stripes
+                          WHERE card_id = ? AND balance <> 0
+                          ORDER BY stripe
+                            FOR UPDATE) locked
+                  WHERE s.card_id = ? AND s.stripe = locked.stripe
+              RETURNING locked.balance AS amount)
+            UPDATE cards
+               SET balance = balance + (SELECT COALESCE(SUM(amount), 0) FROM folded), version = version + 1
+             WHERE id = ?
+            RETURNING (SELECT COALESCE(SUM(amount), 0) FROM folded)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public CardBalanceStripes(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Зачисляет сумму в полосу, выбранную по stripeHash. false — карта не найдена, не активна
+     * или не разбита на полосы; причину выясняет вызывающий код.
+     */
+    public boolean credit(UUID cardId, UUID userId, BigDecimal amount, int stripeHash) {
+        return jdbcTemplate.update(CREDIT_SQL, amount, cardId, userId, stripeHash & Integer.MAX_VALUE) == 1;
+    }
+
+    // Выполняется в транзакции вызывающего кода; полосы остаются заблокированными до её завершения
+    public BigDecimal fold(UUID cardId) {
+        List<BigDecimal> folded = jdbcTemplate.queryForList(FOLD_SQL, BigDecimal.class, cardId, cardId, cardId);
+        return folded.isEmpty() ? BigDecimal.ZERO : folded.get(0);
+    }
+
+    /**
+     * Меняет число полос карты в транзакции вызывающего кода. Все полосы блокируются заранее:
+     * иначе зачисление в удаляемую полосу могло бы пройти между сворачиванием и удалением.
+     */
+    public boolean resize(UUID cardId, int stripeCount) {
+        if (stripeCount < 0 || stripeCount > MAX_STRIPES) {
+            throw new InvalidStripeCountException(MAX_STRIPES);
+        }
+        jdbcTemplate.queryForList(
+                "SELECT stripe FROM card_balance_stripes WHERE card_id = ? ORDER BY stripe FOR UPDATE",
+                Integer.class, cardId);
+        fold(cardId);
+        if (jdbcTemplate.update("UPDATE cards SET stripe_count = ?, version = version + 1 WHERE id = ?",
+                stripeCount, cardId) == 0) {
+            return false;
+        }
+        jdbcTemplate.update("DELETE FROM card_balance_stripes WHERE card_id = ? AND stripe >= ?", cardId, stripeCount);
+        jdbcTemplate.update("""
+                INSERT INTO card_balance_stripes (card_id, stripe, balance)
+                SELECT ?, g, 0 FROM generate_series(0, ? - 1) g
+                ON CONFLICT DO NOTHING
+                """, cardId, stripeCount);
+        return true;
+    }
+
+    // Каждая карта сворачивается отдельной короткой транзакцией, чтобы не держать блокировки полос долго
+    @Scheduled(fixedDelayString = "${app.card-stripes.compact-interval-ms:60000}")
+    public void compact() {
+        List<UUID> cardIds = jdbcTemplate.queryForList(
+                "SELECT DISTINCT card_id FROM card_balance_stripes WHERE balance <> 0", UUID.class);
+        BigDecimal total = BigDecimal.ZERO;
+        for (UUID cardId : cardIds) {
+            total = total.add(transactionTemplate.execute(status -> fold(cardId)));
+        }
+        if (!cardIds.isEmpty()) {
+            log.info("Folded balance stripes of {} cards, total {}", cardIds.size(), total);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResult;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.exception.CardIsNotActiveException;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidTransferAmountException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.CardLedgerService;
+import com.example.bankcards.util.TransactionUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Выполняет пакет переводов одной транзакцией: все карты пакета блокируются одним запросом в порядке id,
+ * переводы проверяются по текущим (с учётом предыдущих переводов) балансам, а в БД записывается
+ * только итоговое изменение баланса каждой карты пакетным UPDATE.
+ */
+@Component
+@Slf4j
+public class CardBatchTransferExecutor {
+
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE cards SET balance = balance + ?, version = version + 1 WHERE id = ?";
+
+    private final CardRepository cardRepository;
+    private final CardLedgerService cardLedgerService;
+    private final CardResponseCache cardResponseCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration lockTimeout;
+
+    public CardBatchTransferExecutor(CardRepository cardRepository,
+                                     CardLedgerService cardLedgerService,
+                                     CardResponseCache cardResponseCache,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${app.transfer.lock-timeout:3s}") Duration lockTimeout) {
+        this.cardRepository = cardRepository;
+        this.cardLedgerService = cardLedgerService;
+        this.cardResponseCache = cardResponseCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lockTimeout = lockTimeout;
+    }
+
+    public BatchTransferResponse transfer(BatchTransferRequest request, UUID userId) {
+        return transfer(request, userId, response -> {
+        });
+    }
+
+    /**
+     * onApplied получает ответ в транзакции пакета, если пакет применён; отклонённый целиком пакет
+     * ничего не меняет и onApplied не вызывает. Сбой COMMIT сообщается как OperationOutcomeUnknownException.
+     */
+    public BatchTransferResponse transfer(BatchTransferRequest request, UUID userId,
+                                          Consumer<BatchTransferResponse> onApplied) {
+        return TransactionUtil.executeReportingCommitOutcome(transactionTemplate, status -> {
+            List<TransferRequest> transfers = request.getTransfers();
+            Evaluation evaluation = evaluate(transfers, userId);
+
+            List<TransferResult> results = new ArrayList<>(transfers.size());
+            for (int i = 0; i < transfers.size(); i++) {
+                RuntimeException failure = evaluation.failures().get(i);
+                results.add(failure == null
+                        ? new TransferResult(i, TransferResult.Status.SUCCESS, null)
+                        : new TransferResult(i, TransferResult.Status.FAILED, failure.getMessage()));
+            }
+
+            int failed = (int) results.stream().filter(r -> r.getStatus() == TransferResult.Status.FAILED).count();
+            if (failed > 0 && request.isAllOrNothing()) {
+                status.setRollbackOnly();
+                results.stream()
+                        .filter(r -> r.getStatus() == TransferResult.Status.SUCCESS)
+                        .forEach(r -> r.setStatus(TransferResult.Status.NOT_APPLIED));
+                return new BatchTransferResponse(false, 0, failed, results);
+            }
+
+            apply(transfers, evaluation);
+            BatchTransferResponse response = new BatchTransferResponse(true, results.size() - failed, failed, results);
+            onApplied.accept(response);
+            return response;
+        });
+    }
+
+    /**
+     * Применяет переводы одного пользователя в уже открытой транзакции, каждый независимо от остальных.
+     * Для каждого перевода возвращает null или причину отказа.
+     */
+    List<RuntimeException> applyIndependently(List<TransferRequest> transfers, UUID userId) {
+        Evaluation evaluation = evaluate(transfers, userId);
+        apply(transfers, evaluation);
+        return evaluation.failures();
+    }
+
+    private record Evaluation(List<RuntimeException> failures, Map<UUID, Money> deltas) {
+    }
+
+    private Evaluation evaluate(List<TransferRequest> transfers, UUID userId) {
+        Map<UUID, Card> cards = lockCards(transfers, userId);
+        Map<UUID, Money> balances = new HashMap<>();
+        cards.forEach((id, card) -> balances.put(id, card.getTotalBalance()));
+        Map<UUID, Money> deltas = new TreeMap<>(CardTransferExecutor.LOCK_ORDER);
+
+        List<RuntimeException> failures = new ArrayList<>(transfers.size());
+        for (TransferRequest transfer : transfers) {
+            try {
+                applyInMemory(transfer, cards, balances, deltas);
+                failures.add(null);
+            } catch (CardNotFoundException | CardIsNotActiveException | InsufficientFundsException
+                     | InvalidTransferAmountException | IllegalArgumentException e) {
+                failures.add(e);
+            }
+        }
+        return new Evaluation(failures, deltas);
+    }
+
+    private void apply(List<TransferRequest> transfers, Evaluation evaluation) {
+        writeDeltas(evaluation.deltas());
+        cardResponseCache.evictAfterCommit(evaluation.deltas().keySet());
+        for (int i = 0; i < transfers.size(); i++) {
+            if (evaluation.failures().get(i) == null) {
+                TransferRequest transfer = transfers.get(i);
+                cardLedgerService.recordTransfer(transfer.getFromCardId(), transfer.getToCardId(),
+                        transfer.getAmount().toBigDecimal());
+            }
+        }
+    }
+
+    private Map<UUID, Card> lockCards(List<TransferRequest> transfers, UUID userId) {
+        List<UUID> cardIds = transfers.stream()
+                .flatMap(t -> Stream.of(t.getFromCardId(), t.getToCardId()))
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (cardIds.isEmpty()) {
+            return Map.of();
+        }
+
+        cardRepository.setLockTimeout(lockTimeout.toMillis() + "ms");
+        return cardRepository.findAllByIdInAndUserIdForUpdate(cardIds, userId).stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+    }
+
+    private void applyInMemory(TransferRequest transfer,
+                               Map<UUID, Card> cards,
+                               Map<UUID, Money> balances,
+                               Map<UUID, Money> deltas) {
+        Card fromCard = getCard(cards, transfer.getFromCardId());
+        Card toCard = getCard(cards, transfer.getToCardId());
+        Money amount = transfer.getAmount();
+
+        if (amount == null || amount.signum() <= 0) {
+            throw new InvalidTransferAmountException();
+        }
+
+        if (fromCard.getStatus() != CardStatus.ACTIVE || toCard.getStatus() != CardStatus.ACTIVE) {
+            throw new CardIsNotActiveException();
+        }
+
+        if (balances.get(fromCard.getId()).isLessThan(amount)) {
+            throw new InsufficientFundsException();
+        }
+
+        balances.merge(fromCard.getId(), amount.negate(), Money::plus);
+        balances.merge(toCard.getId(), amount, Money::plus);
+        deltas.merge(fromCard.getId(), amount.negate(), Money::plus);
+        deltas.merge(toCard.getId(), amount, Money::plus);
+    }
+
+    private void writeDeltas(Map<UUID, Money> deltas) {
+        List<Object[]> updates = deltas.entrySet().stream()
+                .filter(e -> e.getValue().signum() != 0)
+                .map(e -> new Object[]{e.getValue().toBigDecimal(), e.getKey()})
+                .toList();
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, updates);
+        }
+        log.debug("Batch transfer updated {} cards", updates.size());
+    }
+
+    private Card getCard(Map<UUID, Card> cards, UUID cardId) {
+        Card card = cardId == null ? null : cards.get(cardId);
+        if (card == null) {
+            throw new CardNotFoundException(cardId);
+        }
+        return card;
+    }
+}
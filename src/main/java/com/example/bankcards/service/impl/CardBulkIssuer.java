@@ -0,0 +1,152 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.BulkCardResponse;
+import com.example.bankcards.dto.CardChunkResult;
+import com.example.bankcards.dto.CardRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InvalidCardBalanceException;
+import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardLedgerService;
+import com.example.bankcards.util.CardMapperFactory;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Массовый выпуск карт. Пользователи загружаются запросами по 10 000 id, номера выдаёт CardNumberAllocator из памяти,
+ * а id карт генерируются приложением, поэтому вставки не ждут ответа БД и уходят пакетами JDBC
+ * (hibernate.jdbc.batch_size). Каждая часть из chunkSize карт фиксируется отдельной транзакцией;
+ * после первой неудачной части выпуск останавливается, чтобы клиент мог повторить запрос с её позиции.
+ */
+@Component
+@Slf4j
+public class CardBulkIssuer {
+
+    static final String NOT_ATTEMPTED = "Not attempted because a previous chunk failed";
+
+    // Каждый id — отдельный параметр запроса, а у PostgreSQL их не больше 65535 на запрос
+    static final int USER_LOOKUP_BATCH_SIZE = 10_000;
+
+    private final UserRepository userRepository;
+    private final CardRepository cardRepository;
+    private final CardLedgerService cardLedgerService;
+    private final CardNumberAllocator cardNumberAllocator;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public CardBulkIssuer(UserRepository userRepository,
+                          CardRepository cardRepository,
+                          CardLedgerService cardLedgerService,
+                          CardNumberAllocator cardNumberAllocator,
+                          EntityManager entityManager,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.card-bulk.chunk-size:1000}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.cardRepository = cardRepository;
+        this.cardLedgerService = cardLedgerService;
+        this.cardNumberAllocator = cardNumberAllocator;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public BulkCardResponse issue(List<CardRequest> requests) {
+        validateBalances(requests);
+        Map<UUID, User> users = loadUsers(requests);
+
+        List<CardChunkResult> chunks = new ArrayList<>();
+        int created = 0;
+        boolean stopped = false;
+        for (int offset = 0; offset < requests.size(); offset += chunkSize) {
+            List<CardRequest> chunk = requests.subList(offset, Math.min(offset + chunkSize, requests.size()));
+            if (stopped) {
+                chunks.add(new CardChunkResult(offset, chunk.size(), false, List.of(), NOT_ATTEMPTED));
+                continue;
+            }
+            try {
+                List<UUID> cardIds = transactionTemplate.execute(status -> issueChunk(chunk, users));
+                chunks.add(new CardChunkResult(offset, chunk.size(), true, cardIds, null));
+                created += chunk.size();
+            } catch (RuntimeException e) {
+                log.error("Bulk issue chunk at offset {} of {} cards was rolled back", offset, chunk.size(), e);
+                chunks.add(new CardChunkResult(offset, chunk.size(), false, List.of(),
+                        NestedExceptionUtils.getMostSpecificCause(e).getMessage()));
+                stopped = true;
+            }
+        }
+        return new BulkCardResponse(created, requests.size() - created, chunks);
+    }
+
+    // Балансы и пользователи проверяются до первой вставки, чтобы ошибка в данных не оставляла выпуск наполовину
+    private void validateBalances(List<CardRequest> requests) {
+        for (int position = 0; position < requests.size(); position++) {
+            BigDecimal balance = requests.get(position).getBalance();
+            if (!isValidBalance(balance)) {
+                throw new InvalidCardBalanceException(position, balance);
+            }
+        }
+    }
+
+    private static boolean isValidBalance(BigDecimal balance) {
+        if (balance == null || balance.signum() < 0) {
+            return false;
+        }
+        try {
+            Money.of(balance);
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private Map<UUID, User> loadUsers(List<CardRequest> requests) {
+        List<UUID> userIds = requests.stream()
+                .map(CardRequest::getUserId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<UUID, User> users = new HashMap<>();
+        for (int from = 0; from < userIds.size(); from += USER_LOOKUP_BATCH_SIZE) {
+            userRepository.findAllById(userIds.subList(from, Math.min(from + USER_LOOKUP_BATCH_SIZE, userIds.size())))
+                    .forEach(user -> users.put(user.getId(), user));
+        }
+        for (CardRequest request : requests) {
+            if (!users.containsKey(request.getUserId())) {
+                throw new UserNotFoundException(request.getUserId());
+            }
+        }
+        return users;
+    }
+
+    private List<UUID> issueChunk(List<CardRequest> chunk, Map<UUID, User> users) {
+        List<Card> cards = new ArrayList<>(chunk.size());
+        for (CardRequest request : chunk) {
+            cards.add(CardMapperFactory.toCard(
+                    users.get(request.getUserId()), cardNumberAllocator.next(), Money.of(request.getBalance())));
+        }
+        cardRepository.saveAll(cards);
+
+        Map<UUID, BigDecimal> openings = new LinkedHashMap<>();
+        for (Card card : cards) {
+            openings.put(card.getId(), card.getBalance().toBigDecimal());
+        }
+        cardLedgerService.recordOpenings(openings);
+
+        // Контекст может жить весь запрос (open-in-view): без очистки каждая часть проверяла бы все прежние карты
+        entityManager.flush();
+        entityManager.clear();
+        return cards.stream().map(Card::getId).toList();
+    }
+}
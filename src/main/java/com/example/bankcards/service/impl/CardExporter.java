@@ -0,0 +1,145 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardExportFormat;
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.CardExportLimitExceededException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardView;
+import com.example.bankcards.service.CardExport;
+import com.example.bankcards.util.CardMapperFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка карт по фильтру прямо в поток ответа. Строки читаются курсором PostgreSQL по fetchSize штук
+ * и кодируются по одной, поэтому память не зависит от числа карт. Первая строка сбрасывается клиенту сразу,
+ * дальше вывод буферизуется. Каждая выгрузка держит соединение и курсор до конца, поэтому одновременно
+ * выполняется не больше max-concurrent выгрузок, остальные сразу отклоняются.
+ */
+@Component
+public class CardExporter {
+
+    private static final String CSV_HEADER = "id,number,expirationDate,status,balance\n";
+
+    private final CardRepository cardRepository;
+    private final ObjectWriter jsonWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final int fetchSize;
+    private final Semaphore permits;
+
+    public CardExporter(CardRepository cardRepository,
+                        ObjectMapper objectMapper,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${app.card-export.fetch-size:1000}") int fetchSize,
+                        @Value("${app.card-export.max-concurrent:2}") int maxConcurrent) {
+        this.cardRepository = cardRepository;
+        this.jsonWriter = objectMapper.writerFor(CardResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.fetchSize = Math.max(1, fetchSize);
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+    }
+
+    /**
+     * Занимает место для выгрузки до того, как клиенту уйдёт хоть один байт ответа.
+     */
+    public CardExport open(Specification<Card> spec, CardExportFormat format) {
+        if (!permits.tryAcquire()) {
+            throw new CardExportLimitExceededException();
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return new CardExport() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                try {
+                    export(spec, format, out);
+                } finally {
+                    close();
+                }
+            }
+
+            @Override
+            public void close() {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        };
+    }
+
+    public void export(Specification<Card> spec, CardExportFormat format, OutputStream out) throws IOException {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<CardView> cards = cardRepository.streamViews(spec, fetchSize)) {
+                    Iterator<CardView> rows = cards.iterator();
+                    switch (format) {
+                        case NDJSON -> writeNdjson(rows, out);
+                        case CSV -> writeCsv(rows, out);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeNdjson(Iterator<CardView> rows, OutputStream out) throws IOException {
+        JsonGenerator generator = jsonWriter.createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // Строки разделяет перевод строки, а не пробел по умолчанию
+        generator.setRootValueSeparator(null);
+        boolean first = true;
+        while (rows.hasNext()) {
+            jsonWriter.writeValue(generator, CardMapperFactory.toCardResponse(rows.next()));
+            generator.writeRaw('\n');
+            if (first) {
+                generator.flush();
+                first = false;
+            }
+        }
+        generator.flush();
+    }
+
+    // Значения не содержат запятых и кавычек: номер маскирован, остальное — UUID, даты, статусы и числа
+    private void writeCsv(Iterator<CardView> rows, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(CSV_HEADER);
+        writer.flush();
+        while (rows.hasNext()) {
+            CardResponse card = CardMapperFactory.toCardResponse(rows.next());
+            writer.write(card.getId().toString());
+            writer.write(',');
+            writer.write(card.getNumber());
+            writer.write(',');
+            writer.write(card.getExpirationDate().toString());
+            writer.write(',');
+            writer.write(card.getStatus().name());
+            writer.write(',');
+            writer.write(card.getBalance().toPlainString());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+}
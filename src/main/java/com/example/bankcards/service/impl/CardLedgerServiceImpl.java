@@ -0,0 +1,116 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.CardTransaction;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.service.CardLedgerService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Журнал пишется в транзакции, изменяющей баланс, поэтому журнал и cards.balance всегда согласованы.
+ * Фоновая задача сверяет их по окнам зафиксированных транзакций и сохраняет контрольные точки баланса.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CardLedgerServiceImpl implements CardLedgerService {
+
+    private static final long CHECKPOINT_LOCK_KEY = 0x6C65646765724350L;
+
+    private final CardTransactionRepository cardTransactionRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOpening(UUID cardId, BigDecimal balance) {
+        cardTransactionRepository.save(CardTransaction.builder()
+                .cardId(cardId)
+                .type(CardTransaction.Type.OPENING)
+                .amount(balance)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOpenings(Map<UUID, BigDecimal> balances) {
+        LocalDateTime now = LocalDateTime.now();
+        cardTransactionRepository.saveAll(balances.entrySet().stream()
+                .map(balance -> CardTransaction.builder()
+                        .cardId(balance.getKey())
+                        .type(CardTransaction.Type.OPENING)
+                        .amount(balance.getValue())
+                        .createdAt(now)
+                        .build())
+                .toList());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfer(UUID fromCardId, UUID toCardId, BigDecimal amount) {
+        UUID transferId = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        cardTransactionRepository.saveAll(List.of(
+                CardTransaction.builder()
+                        .cardId(fromCardId)
+                        .transferId(transferId)
+                        .type(CardTransaction.Type.DEBIT)
+                        .amount(amount.negate())
+                        .createdAt(now)
+                        .build(),
+                CardTransaction.builder()
+                        .cardId(toCardId)
+                        .transferId(transferId)
+                        .type(CardTransaction.Type.CREDIT)
+                        .amount(amount)
+                        .createdAt(now)
+                        .build()
+        ));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal getBalanceAsOf(UUID cardId, LocalDateTime at) {
+        return cardTransactionRepository.getBalanceAsOf(cardId, at);
+    }
+
+    @Scheduled(fixedDelayString = "${app.ledger.checkpoint-interval-ms:300000}")
+    @Transactional
+    public void checkpointAndReconcile() {
+        if (!cardTransactionRepository.tryAdvisoryLock(CHECKPOINT_LOCK_KEY)) {
+            log.debug("Ledger checkpoint is running on another instance");
+            return;
+        }
+
+        // Окно закрывается по id транзакций, а не по времени: created_at ставится до фиксации,
+        // и строка с ранним временем может зафиксироваться уже после того, как окно закрыто
+        long windowStart = cardTransactionRepository.findLatestCheckpointWatermark().orElse(0L);
+        long windowEnd = cardTransactionRepository.findCommitWatermark();
+        if (windowEnd <= windowStart) {
+            return;
+        }
+
+        List<CardTransactionRepository.LedgerMismatch> mismatches =
+                cardTransactionRepository.findMismatches(windowStart, windowEnd);
+        for (CardTransactionRepository.LedgerMismatch mismatch : mismatches) {
+            log.error("Card {} balance {} does not match ledger balance {}",
+                    mismatch.getCardId(), mismatch.getCardBalance(), mismatch.getLedgerBalance());
+        }
+        meterRegistry.counter("app.ledger.mismatches").increment(mismatches.size());
+
+        int checkpoints = cardTransactionRepository.createCheckpoints(windowStart, windowEnd);
+        log.info("Ledger reconciled up to transaction {}: {} checkpoints, {} mismatches",
+                windowEnd, checkpoints, mismatches.size());
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.bankcards.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Выдаёт уникальные номера карт без обращения к таблице cards. Номер — BIN из шести цифр, девять цифр
+ * номера счёта и контрольная цифра Луна. Номера счетов берутся из блоков по BLOCK_SIZE, которые экземпляр
+ * резервирует одним nextval(card_number_block_seq), и раздаются из памяти без блокировок. Порядковый номер
+ * переставляется ключевой сетью Фейстеля, поэтому соседние карты не получают соседние номера, а по одному
+ * номеру нельзя угадать другие. Перестановка взаимно однозначна, так что разные порядковые номера всегда дают
+ * разные номера карт. Ключ и BIN после выпуска первых карт менять нельзя.
+ * По умолчанию пятая цифра BIN — 0, а прежний генератор давал вторую группу от 1000, поэтому старые
+ * и новые номера не пересекаются.
+ */
+@Component
+public class CardNumberAllocator {
+
+    static final long BLOCK_SIZE = 1_000;
+
+    // Девять цифр номера счёта
+    private static final long ACCOUNT_SPACE = 1_000_000_000L;
+    // Сеть работает на 30 битах (2^30 > 10^9), лишние значения отбрасываются повторным шифрованием
+    private static final int HALF_BITS = 15;
+    private static final int HALF_MASK = (1 << HALF_BITS) - 1;
+    private static final int ROUNDS = 6;
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private record Block(AtomicLong next, long end) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String bin;
+    private final ThreadLocal<Mac> macs;
+    private final AtomicReference<Block> current = new AtomicReference<>(new Block(new AtomicLong(), 0));
+    private final Object refillLock = new Object();
+
+    public CardNumberAllocator(JdbcTemplate jdbcTemplate,
+                               @Value("${app.card-number.bin:220000}") String bin,
+                               @Value("${app.card-number.key}") String key) {
+        if (bin == null || !bin.matches("\\d{6}")) {
+            throw new IllegalArgumentException("Card BIN must be 6 digits: " + bin);
+        }
+        if (key == null || key.isBlank()) {
+            throw new IllegalArgumentException("Card number key must not be blank");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.bin = bin;
+        SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(secretKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Следующий номер карты в виде "2200 0043 3568 8905".
+     */
+    public String next() {
+        String digits = bin + String.format("%09d", permute(nextSequenceValue()));
+        digits += luhnCheckDigit(digits);
+        return digits.substring(0, 4) + " " + digits.substring(4, 8) + " "
+                + digits.substring(8, 12) + " " + digits.substring(12);
+    }
+
+    private long nextSequenceValue() {
+        while (true) {
+            Block block = current.get();
+            long value = block.next().getAndIncrement();
+            if (value < block.end()) {
+                return value;
+            }
+            synchronized (refillLock) {
+                // Блок мог уже заменить другой поток, пока этот ждал
+                if (current.get() == block) {
+                    current.set(reserveBlock());
+                }
+            }
+        }
+    }
+
+    private Block reserveBlock() {
+        Long index = jdbcTemplate.queryForObject("SELECT nextval('card_number_block_seq')", Long.class);
+        long start = Math.multiplyExact(index, BLOCK_SIZE);
+        if (start >= ACCOUNT_SPACE) {
+            throw new IllegalStateException("Card numbers of BIN " + bin + " are exhausted");
+        }
+        return new Block(new AtomicLong(start), start + BLOCK_SIZE);
+    }
+
+    long permute(long value) {
+        long result = value;
+        do {
+            result = encrypt(result);
+        } while (result >= ACCOUNT_SPACE);
+        return result;
+    }
+
+    private long encrypt(long value) {
+        int left = (int) (value >>> HALF_BITS) & HALF_MASK;
+        int right = (int) value & HALF_MASK;
+        Mac mac = macs.get();
+        for (int round = 0; round < ROUNDS; round++) {
+            mac.update((byte) round);
+            mac.update((byte) (right >>> 8));
+            mac.update((byte) right);
+            byte[] hash = mac.doFinal();
+            int next = left ^ (((hash[0] & 0xff) << 8 | (hash[1] & 0xff)) & HALF_MASK);
+            left = right;
+            right = next;
+        }
+        return (long) left << HALF_BITS | right;
+    }
+
+    static int luhnCheckDigit(String digits) {
+        int sum = 0;
+        // Контрольная цифра встанет справа, поэтому удваивается последняя цифра и далее через одну
+        boolean doubled = true;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
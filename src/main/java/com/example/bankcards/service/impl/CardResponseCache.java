@@ -0,0 +1,87 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardMapperFactory;
+import com.example.bankcards.util.TransactionUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Кэш карточек карт по ID для чтения карты. Одновременные промахи по одной карте дают одну загрузку:
+ * остальные потоки ждут её результата. Записи удаляются только после коммита изменившей карту транзакции,
+ * поэтому откаченные изменения в кэш не попадают. Удаление, пришедшее во время загрузки, дожидается её
+ * окончания и удаляет уже загруженное значение. Отсутствующие карты не кэшируются.
+ * Другие экземпляры приложения узнают об изменении через {@link CacheInvalidationBus}.
+ */
+@Component
+public class CardResponseCache {
+
+    private final CardRepository cardRepository;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final Cache<UUID, CardResponse> cards;
+
+    public CardResponseCache(CardRepository cardRepository,
+                             CacheInvalidationBus cacheInvalidationBus,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.card-cache.max-size:100000}") long maxSize,
+                             @Value("${app.card-cache.ttl:10m}") Duration ttl) {
+        this.cardRepository = cardRepository;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        // cache.gets (hit/miss) и cache.load.duration регистрирует CaffeineCacheMetrics
+        this.cards = CaffeineCacheMetrics.monitor(
+                meterRegistry,
+                Caffeine.newBuilder()
+                        .maximumSize(maxSize)
+                        .expireAfterWrite(ttl)
+                        .recordStats()
+                        .<UUID, CardResponse>build(),
+                "cardResponses"
+        );
+        Gauge.builder("app.card-cache.hit-ratio", cards, cache -> cache.stats().hitRate())
+                .description("Доля чтений карты, обслуженных из кэша")
+                .register(meterRegistry);
+        cacheInvalidationBus.subscribe(CacheInvalidationBus.Topic.CARD, new CacheInvalidationBus.Subscriber() {
+            @Override
+            public void evict(Collection<UUID> ids) {
+                cards.invalidateAll(ids);
+            }
+
+            @Override
+            public void evictAll() {
+                cards.invalidateAll();
+            }
+        });
+    }
+
+    public CardResponse get(UUID cardId) {
+        return cards.get(cardId, this::load);
+    }
+
+    public void evictAfterCommit(UUID... cardIds) {
+        evictAfterCommit(List.of(cardIds));
+    }
+
+    public void evictAfterCommit(Collection<UUID> cardIds) {
+        List<UUID> ids = List.copyOf(cardIds);
+        cacheInvalidationBus.publish(CacheInvalidationBus.Topic.CARD, ids);
+        TransactionUtil.afterCommit(() -> cards.invalidateAll(ids));
+    }
+
+    private CardResponse load(UUID cardId) {
+        return cardRepository.findViewById(cardId)
+                .map(CardMapperFactory::toCardResponse)
+                .orElseThrow(() -> new CardNotFoundException(cardId));
+    }
+}
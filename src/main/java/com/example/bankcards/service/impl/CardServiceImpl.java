@@ -1,40 +1,68 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.BulkCardRequest;
+import com.example.bankcards.dto.BulkCardResponse;
+import com.example.bankcards.dto.CardCursor;
+import com.example.bankcards.dto.CardExportFormat;
 import com.example.bankcards.dto.CardFilter;
 import com.example.bankcards.dto.CardRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSlice;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardBlockRequest;
 import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
 import com.example.bankcards.exception.*;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.CardBlockRequestRepository;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.CardSpecification;
+import com.example.bankcards.repository.CardView;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardExport;
+import com.example.bankcards.service.CardLedgerService;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.util.CardMapperFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CardServiceImpl implements CardService {
 
+    // Страница выбирается с одной лишней картой, поэтому размер ограничен и pageSize + 1 не переполняется
+    private static final int MAX_SCROLL_PAGE_SIZE = 1000;
+
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final CardBlockRequestRepository cardBlockRequestRepository;
+    private final CardTransferExecutor cardTransferExecutor;
+    private final CardTransferSequencer cardTransferSequencer;
+    private final CardBatchTransferExecutor cardBatchTransferExecutor;
+    private final CardLedgerService cardLedgerService;
+    private final CardBalanceStripes cardBalanceStripes;
+    private final CardResponseCache cardResponseCache;
+    private final CardExporter cardExporter;
+    private final CardNumberAllocator cardNumberAllocator;
+    private final CardBulkIssuer cardBulkIssuer;
 
     @Override
     @PreAuthorize("hasRole('ADMIN')")
@@ -44,28 +72,50 @@ public class CardServiceImpl implements CardService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new UserNotFoundException(userId));
 
-        Card saved = cardRepository.save(CardMapperFactory.toCard(user, cardRequest.getBalance()));
+        Card saved = cardRepository.save(
+                CardMapperFactory.toCard(user, cardNumberAllocator.next(), Money.of(cardRequest.getBalance())));
+        cardLedgerService.recordOpening(saved.getId(), saved.getBalance().toBigDecimal());
         return CardMapperFactory.toCardResponse(saved);
     }
 
+    // Без общей транзакции: каждая часть фиксируется отдельно внутри CardBulkIssuer
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public BulkCardResponse createCards(BulkCardRequest request) {
+        return cardBulkIssuer.issue(request.getCards());
+    }
+
+    // Без транзакции: попадание в кэш не должно занимать соединение, загрузка идёт в транзакции репозитория
     @Override
-    @Transactional(readOnly = true)
     public CardResponse getCardById(UUID id) {
-        Card card = cardRepository.findById(id)
-                .orElseThrow(() -> new CardNotFoundException(id));
-        return CardMapperFactory.toCardResponse(card);
+        return cardResponseCache.get(id);
     }
 
     @Override
     @PreAuthorize("hasRole('ADMIN')")
     @Transactional(readOnly = true)
     public Page<CardResponse> getAllCards(CardFilter cardFilter) {
-        return cardRepository.findAll(
+        return cardRepository.findViews(
                 CardSpecification.withFilter(cardFilter),
                 PageRequest.of(cardFilter.getPageNumber(), cardFilter.getPageSize())
         ).map(CardMapperFactory::toCardResponse);
     }
 
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional(readOnly = true)
+    public CardSlice scrollAllCards(CardFilter cardFilter) {
+        return scroll(cardFilter);
+    }
+
+    // Права и лимит выгрузок проверяются до начала ответа, а выгрузка идёт позже, в потоке записи ответа,
+    // в своей транзакции
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public CardExport exportCards(CardFilter cardFilter, CardExportFormat format) {
+        return cardExporter.open(CardSpecification.withFilter(cardFilter), format);
+    }
+
     @Override
     @PreAuthorize("hasRole('ADMIN')")
     @Transactional
@@ -91,6 +141,7 @@ public class CardServiceImpl implements CardService {
 
         card.setStatus(status);
         Card updated = cardRepository.save(card);
+        cardResponseCache.evictAfterCommit(cardId);
         return CardMapperFactory.toCardResponse(updated);
     }
 
@@ -102,6 +153,18 @@ public class CardServiceImpl implements CardService {
             throw new CardNotFoundException(id);
         }
         cardRepository.deleteById(id);
+        cardResponseCache.evictAfterCommit(id);
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional
+    public CardResponse setBalanceStripes(UUID cardId, int stripeCount) {
+        if (!cardBalanceStripes.resize(cardId, stripeCount)) {
+            throw new CardNotFoundException(cardId);
+        }
+        cardResponseCache.evictAfterCommit(cardId);
+        return CardMapperFactory.toCardResponse(getCardByIdRaw(cardId));
     }
 
     @Override
@@ -109,12 +172,33 @@ public class CardServiceImpl implements CardService {
     @Transactional(readOnly = true)
     public Page<CardResponse> getAllMyCards(UUID currentUserId, CardFilter cardFilter) {
         cardFilter.setUserId(currentUserId);
-        return cardRepository.findAll(
+        return cardRepository.findViews(
                 CardSpecification.withFilter(cardFilter),
                 PageRequest.of(cardFilter.getPageNumber(), cardFilter.getPageSize())
         ).map(CardMapperFactory::toCardResponse);
     }
 
+    @Override
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    @Transactional(readOnly = true)
+    public CardSlice scrollAllMyCards(UUID currentUserId, CardFilter cardFilter) {
+        cardFilter.setUserId(currentUserId);
+        return scroll(cardFilter);
+    }
+
+    // Одна лишняя карта в выборке показывает, есть ли следующая страница, без COUNT
+    private CardSlice scroll(CardFilter cardFilter) {
+        Specification<Card> spec = CardSpecification.withFilter(cardFilter);
+        int pageSize = Math.min(MAX_SCROLL_PAGE_SIZE, Math.max(1, cardFilter.getPageSize()));
+        List<CardView> cards = cardRepository.findAfter(spec, CardCursor.decode(cardFilter.getCursor()), pageSize + 1);
+
+        boolean hasNext = cards.size() > pageSize;
+        List<CardView> page = hasNext ? cards.subList(0, pageSize) : cards;
+        String nextCursor = hasNext ? CardCursor.after(page.get(pageSize - 1)).encode() : null;
+        Long total = Boolean.TRUE.equals(cardFilter.getIncludeTotal()) ? cardRepository.count(spec) : null;
+        return new CardSlice(page.stream().map(CardMapperFactory::toCardResponse).toList(), nextCursor, hasNext, total);
+    }
+
     @Override
     @PreAuthorize("hasRole('USER')")
     @Transactional
@@ -145,24 +229,51 @@ public class CardServiceImpl implements CardService {
 
     @Override
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    @Transactional
     public void transferBetweenMyCards(TransferRequest request, UUID currentUserId) {
-        Card fromCard = getCardByIdAndUserId(request.getFromCardId(), currentUserId);
-        Card toCard = getCardByIdAndUserId(request.getToCardId(), currentUserId);
+        transferBetweenMyCards(request, currentUserId, () -> {
+        });
+    }
 
-        if (fromCard.getStatus() != CardStatus.ACTIVE || toCard.getStatus() != CardStatus.ACTIVE) {
-            throw new CardIsNotActiveException();
+    @Override
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public void transferBetweenMyCards(TransferRequest request, UUID currentUserId, Runnable onApplied) {
+        if (!cardTransferSequencer.isEnabled()) {
+            cardTransferExecutor.transfer(request, currentUserId, onApplied);
+            return;
+        }
+        try {
+            // Ожидание ограничено app.transfer.sequencer.timeout: по истечении future завершается с 503
+            // или, если перевод уже фиксируется, с неизвестным исходом
+            cardTransferSequencer.submit(request, currentUserId, onApplied).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
+    }
 
-        if (fromCard.getBalance().compareTo(request.getAmount()) < 0) {
-            throw new InsufficientFundsException();
+    @Override
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public CompletableFuture<Void> transferBetweenMyCardsAsync(TransferRequest request, UUID currentUserId) {
+        if (cardTransferSequencer.isEnabled()) {
+            return cardTransferSequencer.submit(request, currentUserId);
         }
+        cardTransferExecutor.transfer(request, currentUserId);
+        return CompletableFuture.completedFuture(null);
+    }
 
-        fromCard.setBalance(fromCard.getBalance().subtract(request.getAmount()));
-        toCard.setBalance(toCard.getBalance().add(request.getAmount()));
+    @Override
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public BatchTransferResponse transferBatchBetweenMyCards(BatchTransferRequest request, UUID currentUserId) {
+        return cardBatchTransferExecutor.transfer(request, currentUserId);
+    }
 
-        cardRepository.save(fromCard);
-        cardRepository.save(toCard);
+    @Override
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public BatchTransferResponse transferBatchBetweenMyCards(BatchTransferRequest request, UUID currentUserId,
+                                                             Consumer<BatchTransferResponse> onApplied) {
+        return cardBatchTransferExecutor.transfer(request, currentUserId, onApplied);
     }
 
     @Override
@@ -170,7 +281,7 @@ public class CardServiceImpl implements CardService {
     @Transactional(readOnly = true)
     public BigDecimal getMyCardBalance(UUID cardId, UUID currentUserId) {
         Card card = getCardByIdAndUserId(cardId, currentUserId);
-        return card.getBalance();
+        return card.getTotalBalance().toBigDecimal();
     }
 
     private Card getCardByIdAndUserId(UUID cardId, UUID userId) {
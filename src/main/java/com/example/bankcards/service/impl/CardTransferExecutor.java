@@ -0,0 +1,272 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.exception.CardIsNotActiveException;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidTransferAmountException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.CardLedgerService;
+import com.example.bankcards.util.TransactionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Выполняет перевод между картами пользователя в режиме, выбранном для развёртывания (app.transfer.mode).
+ * Транзакцией управляет сам исполнитель: в оптимистическом режиме повтор должен охватывать её целиком.
+ */
+@Component
+@Slf4j
+public class CardTransferExecutor {
+
+    public enum Mode {
+        ATOMIC,
+        PESSIMISTIC,
+        OPTIMISTIC
+    }
+
+    // Порядок совпадает с сортировкой uuid в PostgreSQL (беззнаковое побайтовое сравнение)
+    static final Comparator<UUID> LOCK_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    private final CardRepository cardRepository;
+    private final CardLedgerService cardLedgerService;
+    private final CardBalanceStripes cardBalanceStripes;
+    private final CardResponseCache cardResponseCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Mode mode;
+    private final Duration lockTimeout;
+    private final int maxAttempts;
+    private final Duration backoffBase;
+    private final Duration backoffMax;
+    private final DistributionSummary attempts;
+    private final Counter conflicts;
+    private final Counter exhausted;
+
+    public CardTransferExecutor(CardRepository cardRepository,
+                                CardLedgerService cardLedgerService,
+                                CardBalanceStripes cardBalanceStripes,
+                                CardResponseCache cardResponseCache,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.transfer.mode:ATOMIC}") Mode mode,
+                                @Value("${app.transfer.lock-timeout:3s}") Duration lockTimeout,
+                                @Value("${app.transfer.optimistic.max-attempts:5}") int maxAttempts,
+                                @Value("${app.transfer.optimistic.backoff-base:10ms}") Duration backoffBase,
+                                @Value("${app.transfer.optimistic.backoff-max:200ms}") Duration backoffMax) {
+        this.cardRepository = cardRepository;
+        this.cardLedgerService = cardLedgerService;
+        this.cardBalanceStripes = cardBalanceStripes;
+        this.cardResponseCache = cardResponseCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.mode = mode;
+        this.lockTimeout = lockTimeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffBase = backoffBase;
+        this.backoffMax = backoffMax;
+        this.attempts = DistributionSummary.builder("app.transfer.attempts")
+                .description("Количество попыток на один перевод")
+                .tag("mode", mode.name())
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("app.transfer.conflicts")
+                .description("Конфликты версий при оптимистическом переводе")
+                .tag("mode", mode.name())
+                .register(meterRegistry);
+        this.exhausted = Counter.builder("app.transfer.retries.exhausted")
+                .description("Переводы, отклонённые после исчерпания попыток")
+                .tag("mode", mode.name())
+                .register(meterRegistry);
+        log.info("Card transfers run in {} mode", mode);
+    }
+
+    public void transfer(TransferRequest request, UUID userId) {
+        transfer(request, userId, () -> {
+        });
+    }
+
+    /**
+     * onApplied выполняется в транзакции перевода после его применения, например, чтобы записать
+     * ключ идемпотентности атомарно с переводом. Сбой COMMIT сообщается как OperationOutcomeUnknownException.
+     */
+    public void transfer(TransferRequest request, UUID userId, Runnable onApplied) {
+        // Отрицательная сумма прошла бы условие balance >= amount и увела бы карту получателя в минус
+        if (request.getAmount() == null || request.getAmount().signum() <= 0) {
+            throw new InvalidTransferAmountException();
+        }
+        switch (mode) {
+            case ATOMIC -> {
+                execute(() -> transferAtomically(request, userId), onApplied);
+                attempts.record(1);
+            }
+            case PESSIMISTIC -> {
+                execute(() -> transferWithLocks(request, userId), onApplied);
+                attempts.record(1);
+            }
+            case OPTIMISTIC -> transferOptimistically(request, userId, onApplied);
+        }
+    }
+
+    private void execute(Runnable transfer, Runnable onApplied) {
+        TransactionUtil.executeReportingCommitOutcome(transactionTemplate, status -> {
+            transfer.run();
+            onApplied.run();
+            return null;
+        });
+    }
+
+    /**
+     * Перевод двумя условными UPDATE без загрузки сущностей. Строки обновляются в порядке id,
+     * поэтому встречные переводы не блокируют друг друга намертво; при 0 обновлённых строк
+     * причина определяется дополнительным чтением, а транзакция откатывается исключением.
+     * Для карты с полосами баланса зачисление идёт в полосу, выбранную по карте списания.
+     */
+    private void transferAtomically(TransferRequest request, UUID userId) {
+        UUID fromId = request.getFromCardId();
+        UUID toId = request.getToCardId();
+        BigDecimal amount = request.getAmount().toBigDecimal();
+        int stripeHash = fromId.hashCode();
+
+        cardRepository.setLockTimeout(lockTimeout.toMillis() + "ms");
+        if (LOCK_ORDER.compare(fromId, toId) <= 0) {
+            debit(fromId, userId, amount);
+            credit(toId, userId, amount, stripeHash);
+        } else {
+            credit(toId, userId, amount, stripeHash);
+            debit(fromId, userId, amount);
+        }
+        cardLedgerService.recordTransfer(fromId, toId, amount);
+        cardResponseCache.evictAfterCommit(fromId, toId);
+    }
+
+    private void debit(UUID cardId, UUID userId, BigDecimal amount) {
+        if (cardRepository.debitIfActiveAndSufficient(cardId, userId, amount) == 1) {
+            return;
+        }
+        Card card = cardRepository.findByIdAndUserId(cardId, userId)
+                .orElseThrow(() -> new CardNotFoundException(cardId));
+        if (card.getStatus() != CardStatus.ACTIVE) {
+            throw new CardIsNotActiveException();
+        }
+        // Недостающие средства могут лежать в полосах: сворачиваем их и повторяем списание
+        if (card.getStripeCount() > 0
+                && cardBalanceStripes.fold(cardId).signum() > 0
+                && cardRepository.debitIfActiveAndSufficient(cardId, userId, amount) == 1) {
+            return;
+        }
+        throw new InsufficientFundsException();
+    }
+
+    private void credit(UUID cardId, UUID userId, BigDecimal amount, int stripeHash) {
+        if (tryCredit(cardId, userId, amount, stripeHash)) {
+            return;
+        }
+        Card card = cardRepository.findByIdAndUserId(cardId, userId)
+                .orElseThrow(() -> new CardNotFoundException(cardId));
+        // Активная карта не принимает зачисление, только если число её полос изменилось между запросами
+        if (card.getStatus() != CardStatus.ACTIVE || !tryCredit(cardId, userId, amount, stripeHash)) {
+            throw new CardIsNotActiveException();
+        }
+    }
+
+    private boolean tryCredit(UUID cardId, UUID userId, BigDecimal amount, int stripeHash) {
+        return cardRepository.creditIfActive(cardId, userId, amount) == 1
+                || cardBalanceStripes.credit(cardId, userId, amount, stripeHash);
+    }
+
+    private void transferWithLocks(TransferRequest request, UUID userId) {
+        cardRepository.setLockTimeout(lockTimeout.toMillis() + "ms");
+        Map<UUID, Card> cards = cardRepository.findAllByIdInAndUserIdForUpdate(
+                        Stream.of(request.getFromCardId(), request.getToCardId()).distinct().toList(), userId)
+                .stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+
+        applyTransfer(getCard(cards, request.getFromCardId()), getCard(cards, request.getToCardId()), request);
+    }
+
+    private void transferOptimistically(TransferRequest request, UUID userId, Runnable onApplied) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                execute(() -> applyTransfer(
+                        cardRepository.findByIdAndUserId(request.getFromCardId(), userId)
+                                .orElseThrow(() -> new CardNotFoundException(request.getFromCardId())),
+                        cardRepository.findByIdAndUserId(request.getToCardId(), userId)
+                                .orElseThrow(() -> new CardNotFoundException(request.getToCardId())),
+                        request), onApplied);
+                attempts.record(attempt);
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    attempts.record(attempt);
+                    exhausted.increment();
+                    log.warn("Transfer from card {} gave up after {} attempts", request.getFromCardId(), attempt);
+                    throw new TransferConflictException();
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void applyTransfer(Card fromCard, Card toCard, TransferRequest request) {
+        if (fromCard.getStatus() != CardStatus.ACTIVE || toCard.getStatus() != CardStatus.ACTIVE) {
+            throw new CardIsNotActiveException();
+        }
+
+        Money amount = request.getAmount();
+        if (fromCard.getTotalBalance().isLessThan(amount)) {
+            throw new InsufficientFundsException();
+        }
+
+        fromCard.setBalance(fromCard.getBalance().minus(amount));
+        toCard.setBalance(toCard.getBalance().plus(amount));
+
+        cardRepository.save(fromCard);
+        cardRepository.save(toCard);
+        cardLedgerService.recordTransfer(fromCard.getId(), toCard.getId(), amount.toBigDecimal());
+        cardResponseCache.evictAfterCommit(fromCard.getId(), toCard.getId());
+    }
+
+    private Card getCard(Map<UUID, Card> cards, UUID cardId) {
+        Card card = cards.get(cardId);
+        if (card == null) {
+            throw new CardNotFoundException(cardId);
+        }
+        return card;
+    }
+
+    // Full jitter: случайная пауза от нуля до экспоненциально растущего предела
+    private void backoff(int attempt) {
+        long ceiling = Math.min(backoffMax.toMillis(), backoffBase.toMillis() << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException();
+        }
+    }
+}
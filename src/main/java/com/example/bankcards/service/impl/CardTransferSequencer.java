@@ -0,0 +1,220 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.exception.OperationOutcomeUnknownException;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.util.TransactionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Необязательный режим переводов (app.transfer.sequencer.enabled). Переводы пользователя попадают
+ * в одну из полос по хэшу его id, и каждую полосу обслуживает единственный поток. Поток забирает из очереди
+ * все накопившиеся переводы и фиксирует их одной транзакцией (group commit), поэтому стоимость коммита
+ * делится между переводами. Карты пользователя меняет только его полоса, так что блокировки строк,
+ * которые пакет берёт одним запросом, не ждут других переводов.
+ * Результат вызывающий код получает через CompletableFuture, который завершается после коммита
+ * или через app.transfer.sequencer.timeout. Перевод, не попавший в пакет до таймаута, не применяется
+ * и завершается с 503; если пакет с ним уже фиксируется, исход неизвестен и повторять перевод нельзя.
+ */
+@Component
+@Slf4j
+public class CardTransferSequencer {
+
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final CardBatchTransferExecutor cardBatchTransferExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final Duration timeout;
+    private final List<BlockingQueue<PendingTransfer>> lanes;
+    private final List<Thread> workers = new ArrayList<>();
+    private final DistributionSummary batchSizes;
+    private final Counter rejected;
+
+    // taken решает гонку полосы и таймаута: перевод забирает в пакет либо отменяет по таймауту только один из них
+    private record PendingTransfer(TransferRequest request, UUID userId, Runnable onApplied,
+                                   AtomicBoolean taken, CompletableFuture<Void> result) {
+    }
+
+    public CardTransferSequencer(CardBatchTransferExecutor cardBatchTransferExecutor,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.transfer.sequencer.enabled:false}") boolean enabled,
+                                 @Value("${app.transfer.sequencer.lanes:8}") int laneCount,
+                                 @Value("${app.transfer.sequencer.max-batch-size:200}") int maxBatchSize,
+                                 @Value("${app.transfer.sequencer.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${app.transfer.sequencer.timeout:10s}") Duration timeout) {
+        this.cardBatchTransferExecutor = cardBatchTransferExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.timeout = timeout;
+        this.lanes = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, laneCount); i++) {
+            lanes.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+        this.batchSizes = DistributionSummary.builder("app.transfer.sequencer.batch.size")
+                .description("Количество переводов, зафиксированных одной транзакцией")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("app.transfer.sequencer.rejected")
+                .description("Переводы, отклонённые из-за переполненной очереди полосы")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < lanes.size(); i++) {
+            BlockingQueue<PendingTransfer> lane = lanes.get(i);
+            Thread worker = new Thread(() -> drain(lane), "transfer-lane-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Card transfers run through {} sequencer lanes", lanes.size());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        workers.forEach(Thread::interrupt);
+        for (Thread worker : workers) {
+            worker.join(Duration.ofSeconds(5).toMillis());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CompletableFuture<Void> submit(TransferRequest request, UUID userId) {
+        return submit(request, userId, () -> {
+        });
+    }
+
+    // onApplied выполняется в транзакции пакета сразу после применения перевода
+    public CompletableFuture<Void> submit(TransferRequest request, UUID userId, Runnable onApplied) {
+        PendingTransfer pending = new PendingTransfer(request, userId, onApplied, new AtomicBoolean(),
+                new CompletableFuture<>());
+        if (!lanes.get(Math.floorMod(userId.hashCode(), lanes.size())).offer(pending)) {
+            rejected.increment();
+            pending.result().completeExceptionally(new ServiceOverloadedException(RETRY_AFTER));
+            return pending.result();
+        }
+        CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS).execute(() -> expire(pending));
+        return pending.result();
+    }
+
+    private void expire(PendingTransfer pending) {
+        if (pending.taken().compareAndSet(false, true)) {
+            // Перевод ещё в очереди и уже не будет применён: повтор безопасен
+            pending.result().completeExceptionally(new ServiceOverloadedException(RETRY_AFTER));
+        } else if (!pending.result().isDone()) {
+            // Перевод уже в пакете, и его COMMIT может пройти
+            pending.result().completeExceptionally(new OperationOutcomeUnknownException());
+        }
+    }
+
+    private void drain(BlockingQueue<PendingTransfer> lane) {
+        List<PendingTransfer> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            try {
+                batch.add(lane.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            lane.drainTo(batch, maxBatchSize - 1);
+            process(batch);
+            batch.clear();
+        }
+        // Остановка приложения: невыполненные переводы не применены, клиент может повторить их
+        lane.drainTo(batch);
+        batch.stream()
+                .filter(p -> p.taken().compareAndSet(false, true))
+                .forEach(p -> p.result().completeExceptionally(new ServiceOverloadedException(RETRY_AFTER)));
+    }
+
+    private void process(List<PendingTransfer> queued) {
+        // Вызывающий код, дождавшийся таймаута в очереди, уже получил 503: его перевод не применяем
+        List<PendingTransfer> batch = queued.stream().filter(p -> p.taken().compareAndSet(false, true)).toList();
+        if (!batch.isEmpty()) {
+            commit(batch);
+        }
+    }
+
+    private void commit(List<PendingTransfer> batch) {
+        batchSizes.record(batch.size());
+        List<RuntimeException> failures;
+        try {
+            failures = TransactionUtil.executeReportingCommitOutcome(transactionTemplate, status -> applyByUser(batch));
+        } catch (OperationOutcomeUnknownException e) {
+            // Например, соединение оборвалось на COMMIT: повтор мог бы провести переводы дважды
+            log.error("Commit of {} transfers failed with unknown outcome", batch.size(), e);
+            batch.forEach(p -> p.result().completeExceptionally(e));
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(e);
+                return;
+            }
+            // Транзакция откатилась до COMMIT: ошибка одного пользователя (например, таймаут блокировки)
+            // не должна отменять переводы остальных
+            log.warn("Group commit of {} transfers failed, applying them one by one", batch.size(), e);
+            batch.forEach(p -> commit(List.of(p)));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            RuntimeException failure = failures.get(i);
+            if (failure == null) {
+                batch.get(i).result().complete(null);
+            } else {
+                batch.get(i).result().completeExceptionally(failure);
+            }
+        }
+    }
+
+    private List<RuntimeException> applyByUser(List<PendingTransfer> batch) {
+        Map<UUID, List<Integer>> positionsByUser = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            positionsByUser.computeIfAbsent(batch.get(i).userId(), id -> new ArrayList<>()).add(i);
+        }
+
+        List<RuntimeException> failures = new ArrayList<>(Collections.nCopies(batch.size(), null));
+        positionsByUser.forEach((userId, positions) -> {
+            List<RuntimeException> userFailures = cardBatchTransferExecutor.applyIndependently(
+                    positions.stream().map(i -> batch.get(i).request()).toList(), userId);
+            for (int j = 0; j < positions.size(); j++) {
+                failures.set(positions.get(j), userFailures.get(j));
+                if (userFailures.get(j) == null) {
+                    batch.get(positions.get(j)).onApplied().run();
+                }
+            }
+        });
+        return failures;
+    }
+}
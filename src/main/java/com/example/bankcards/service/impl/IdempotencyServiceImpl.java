@@ -0,0 +1,352 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.exception.IdempotencyKeyInProgressException;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
+import com.example.bankcards.exception.InvalidIdempotencyKeyException;
+import com.example.bankcards.exception.OperationOutcomeUnknownException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.service.IdempotencyService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ключи хранятся в таблице idempotency_keys, завершённые результаты дополнительно кэшируются в памяти.
+ * Дубликаты внутри одного экземпляра ждут результат первого запроса, между экземплярами — опрашивают таблицу.
+ * Ключ завершается в той же транзакции, которая применяет изменения действия, поэтому они фиксируются вместе.
+ * Если действие завершилось ошибкой, его транзакция откатилась, ключ освобождается и повтор безопасен.
+ * После ошибки с неизвестным исходом (сбой COMMIT) ключ не освобождается, а помечается OUTCOME_UNKNOWN.
+ * Выполняющийся ключ захвачен на короткую аренду, которую владелец продлевает из отдельного потока;
+ * если экземпляр упал, аренда истекает и повтор того же запроса перехватывает ключ, а не получает 409 до конца ttl.
+ * Перехват меняет токен захвата (id строки), так что прежний владелец уже не сможет завершить ключ.
+ */
+@Service
+@Slf4j
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final Duration lease;
+    private final Duration leaseRenewalInterval;
+    private final Cache<Scope, Outcome> completed;
+    private final ConcurrentMap<Scope, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Set<UUID> claims = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService leaseRenewer;
+
+    private record Scope(UUID userId, String key) {
+    }
+
+    private record Outcome(String requestHash, String responseBody) {
+    }
+
+    private record InFlight(String requestHash, CompletableFuture<Object> result) {
+    }
+
+    public IdempotencyServiceImpl(IdempotencyKeyRepository idempotencyKeyRepository,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                                  @Value("${app.idempotency.wait-timeout:10s}") Duration waitTimeout,
+                                  @Value("${app.idempotency.lease:30s}") Duration lease,
+                                  @Value("${app.idempotency.lease-renewal-interval:10s}") Duration leaseRenewalInterval,
+                                  @Value("${app.idempotency.cache.max-size:10000}") long cacheMaxSize,
+                                  @Value("${app.idempotency.cache.ttl:10m}") Duration cacheTtl) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.lease = lease;
+        this.leaseRenewalInterval = leaseRenewalInterval;
+        this.completed = CaffeineCacheMetrics.monitor(
+                meterRegistry,
+                Caffeine.newBuilder()
+                        .maximumSize(cacheMaxSize)
+                        .expireAfterWrite(cacheTtl.compareTo(ttl) < 0 ? cacheTtl : ttl)
+                        .recordStats()
+                        .<Scope, Outcome>build(),
+                "idempotency"
+        );
+    }
+
+    // Продление аренды не делит пул @Scheduled с долгими задачами, иначе живая аренда могла бы истечь
+    @PostConstruct
+    void start() {
+        leaseRenewer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "idempotency-lease-renewal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        leaseRenewer.scheduleWithFixedDelay(this::renewLeases, leaseRenewalInterval.toMillis(),
+                leaseRenewalInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        leaseRenewer.shutdownNow();
+    }
+
+    @Override
+    public <T> T execute(UUID userId, String key, String operation, Object request,
+                         Class<T> resultType, Action<T> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException();
+        }
+        Scope scope = new Scope(userId, key);
+        String requestHash = hash(operation, request);
+
+        Outcome cached = completed.getIfPresent(scope);
+        if (cached != null) {
+            return replay(cached.requestHash(), requestHash, cached.responseBody(), resultType, "memory");
+        }
+
+        InFlight mine = new InFlight(requestHash, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(scope, mine);
+        if (running != null) {
+            checkSameRequest(running.requestHash(), requestHash);
+            countReplay("wait");
+            return resultType.cast(await(running.result()));
+        }
+
+        try {
+            T result = executeOnce(scope, requestHash, resultType, action);
+            mine.result().complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(scope, mine);
+        }
+    }
+
+    @Scheduled(cron = "${app.idempotency.cleanup-cron:0 30 * * * *}")
+    @Transactional
+    public void deleteExpiredKeys() {
+        int deleted = idempotencyKeyRepository.deleteExpired(LocalDateTime.now());
+        log.info("Deleted {} expired idempotency keys", deleted);
+    }
+
+    void renewLeases() {
+        if (claims.isEmpty()) {
+            return;
+        }
+        try {
+            idempotencyKeyRepository.extendLeases(List.copyOf(claims), IdempotencyKey.Status.IN_PROGRESS,
+                    LocalDateTime.now().plus(lease));
+        } catch (RuntimeException e) {
+            // Исключение отменило бы все следующие продления
+            log.warn("Failed to renew {} idempotency leases", claims.size(), e);
+        }
+    }
+
+    private <T> T executeOnce(Scope scope, String requestHash, Class<T> resultType, Action<T> action) {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            UUID claimId = UUID.randomUUID();
+            int claimed = idempotencyKeyRepository.tryClaim(
+                    claimId, scope.userId(), scope.key(), requestHash, now, now.plus(lease));
+            if (claimed == 1) {
+                return runClaimed(scope, claimId, requestHash, resultType, action);
+            }
+
+            Optional<IdempotencyKey> existing = idempotencyKeyRepository.findByUserIdAndKey(scope.userId(), scope.key());
+            if (existing.isEmpty()) {
+                // Ключ освобождён после ошибки в другом экземпляре — пробуем захватить снова
+                continue;
+            }
+
+            IdempotencyKey record = existing.get();
+            if (record.getStatus() == IdempotencyKey.Status.COMPLETED) {
+                completed.put(scope, new Outcome(record.getRequestHash(), record.getResponseBody()));
+                return replay(record.getRequestHash(), requestHash, record.getResponseBody(), resultType, "database");
+            }
+
+            checkSameRequest(record.getRequestHash(), requestHash);
+            if (record.getStatus() == IdempotencyKey.Status.OUTCOME_UNKNOWN) {
+                throw new OperationOutcomeUnknownException();
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IdempotencyKeyInProgressException();
+            }
+            sleep();
+        }
+    }
+
+    private <T> T runClaimed(Scope scope, UUID claimId, String requestHash, Class<T> resultType, Action<T> action) {
+        claims.add(claimId);
+        try {
+            AtomicBoolean recorded = new AtomicBoolean();
+            T result;
+            try {
+                result = action.run(value -> {
+                    complete(claimId, value);
+                    recorded.set(true);
+                });
+            } catch (OperationOutcomeUnknownException e) {
+                return resolveUnknownOutcome(scope, claimId, requestHash, resultType, e);
+            } catch (RuntimeException e) {
+                // Транзакция действия откатилась вместе с завершением ключа: изменений не было
+                idempotencyKeyRepository.release(claimId, IdempotencyKey.Status.IN_PROGRESS);
+                throw e;
+            }
+
+            if (!recorded.get()) {
+                // Действие ничего не изменило (например, пакет отклонён целиком), результат сохраняется отдельно
+                complete(claimId, result);
+            }
+            completed.put(scope, new Outcome(requestHash, write(result)));
+            return result;
+        } finally {
+            claims.remove(claimId);
+        }
+    }
+
+    private void complete(UUID claimId, Object result) {
+        int updated = idempotencyKeyRepository.complete(claimId, IdempotencyKey.Status.IN_PROGRESS,
+                IdempotencyKey.Status.COMPLETED, write(result), LocalDateTime.now().plus(ttl));
+        if (updated != 1) {
+            // Захват перехвачен повтором после истечения аренды: действие выполнит он, эта транзакция откатывается
+            throw new IdempotencyKeyInProgressException();
+        }
+    }
+
+    /**
+     * Сбой COMMIT: ключ нельзя ни освободить, ни отдать повтору. Пометка OUTCOME_UNKNOWN снимает захват,
+     * поэтому транзакция действия, ещё не завершившая ключ, уже не сможет его завершить. Если же пометка
+     * не прошла, потому что транзакция успела зафиксироваться, ключ завершён и его результат возвращается.
+     */
+    private <T> T resolveUnknownOutcome(Scope scope, UUID claimId, String requestHash, Class<T> resultType,
+                                        OperationOutcomeUnknownException e) {
+        try {
+            int marked = idempotencyKeyRepository.complete(claimId, IdempotencyKey.Status.IN_PROGRESS,
+                    IdempotencyKey.Status.OUTCOME_UNKNOWN, null, LocalDateTime.now().plus(ttl));
+            if (marked == 0) {
+                Optional<IdempotencyKey> record = idempotencyKeyRepository.findByUserIdAndKey(scope.userId(), scope.key());
+                if (record.isPresent() && record.get().getStatus() == IdempotencyKey.Status.COMPLETED) {
+                    completed.put(scope, new Outcome(record.get().getRequestHash(), record.get().getResponseBody()));
+                    return replay(record.get().getRequestHash(), requestHash, record.get().getResponseBody(),
+                            resultType, "database");
+                }
+            }
+        } catch (RuntimeException markFailure) {
+            // Ключ остался захваченным; после истечения аренды его перехватит повтор, но токен захвата уже другой
+            e.addSuppressed(markFailure);
+        }
+        throw e;
+    }
+
+    private <T> T replay(String storedHash, String requestHash, String responseBody, Class<T> resultType, String source) {
+        checkSameRequest(storedHash, requestHash);
+        countReplay(source);
+        return read(responseBody, resultType);
+    }
+
+    private void checkSameRequest(String storedHash, String requestHash) {
+        if (!storedHash.equals(requestHash)) {
+            throw new IdempotencyKeyMismatchException();
+        }
+    }
+
+    private void countReplay(String source) {
+        meterRegistry.counter("app.idempotency.replayed", "source", source).increment();
+    }
+
+    // Локальный дубликат ждёт не дольше, чем дубликат на другом экземпляре опрашивает таблицу
+    private Object await(CompletableFuture<Object> result) {
+        try {
+            return result.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException();
+        }
+    }
+
+    private String hash(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Unable to hash idempotent request", e);
+        }
+    }
+
+    private String write(Object result) {
+        if (result == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to store idempotent response", e);
+        }
+    }
+
+    private <T> T read(String responseBody, Class<T> resultType) {
+        if (responseBody == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(responseBody, resultType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to read idempotent response", e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.exception.AuthenticationException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.AppUserDetails;
+import com.example.bankcards.security.JwtServiceImpl;
+import com.example.bankcards.service.RefreshTokenService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RefreshTokenServiceImpl implements RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final JwtServiceImpl jwtService;
+
+    @Value("${app.jwt.refreshTokenExpiration}")
+    private Duration refreshTokenExpiration;
+
+    @Override
+    @Transactional
+    public String issue(UUID userId) {
+        return createToken(userId, UUID.randomUUID(), LocalDateTime.now());
+    }
+
+    // Отзыв цепочки при повторном использовании должен сохраниться, даже если запрос отклонён
+    @Override
+    @Transactional(noRollbackFor = AuthenticationException.class)
+    public AuthResponse refresh(String refreshToken) {
+        LocalDateTime now = LocalDateTime.now();
+        RefreshToken current = refreshTokenRepository.findByTokenHashForUpdate(hash(refreshToken))
+                .orElseThrow(AuthenticationException::new);
+
+        if (current.getRevokedAt() != null) {
+            log.warn("Refresh token reuse detected for user {}, revoking token family {}",
+                    current.getUser().getId(), current.getFamilyId());
+            refreshTokenRepository.revokeFamily(current.getFamilyId(), now);
+            throw new AuthenticationException();
+        }
+        if (current.getExpiresAt().isBefore(now)) {
+            throw new AuthenticationException();
+        }
+
+        current.setRevokedAt(now);
+
+        AppUserDetails userDetails = new AppUserDetails(current.getUser());
+        String newRefreshToken = createToken(userDetails.getId(), current.getFamilyId(), now);
+
+        return new AuthResponse(jwtService.generateJwtToken(userDetails), newRefreshToken);
+    }
+
+    @Override
+    @Transactional
+    public void revokeAll(UUID userId) {
+        refreshTokenRepository.revokeAllByUserId(userId, LocalDateTime.now());
+    }
+
+    @Scheduled(cron = "${app.jwt.refresh-token-cleanup-cron:0 0 3 * * *}")
+    @Transactional
+    public void deleteExpiredTokens() {
+        int deleted = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        log.info("Deleted {} expired refresh tokens", deleted);
+    }
+
+    private String createToken(UUID userId, UUID familyId, LocalDateTime now) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        SECURE_RANDOM.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        refreshTokenRepository.save(RefreshToken.builder()
+                .user(userRepository.getReferenceById(userId))
+                .tokenHash(hash(rawToken))
+                .familyId(familyId)
+                .createdAt(now)
+                .expiresAt(now.plus(refreshTokenExpiration))
+                .build());
+
+        return rawToken;
+    }
+
+    private String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
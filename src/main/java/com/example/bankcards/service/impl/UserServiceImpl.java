@@ -5,8 +5,12 @@ import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.EmailAlreadyExistsException;
 import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserDetailsServiceImpl;
+import com.example.bankcards.service.RefreshTokenService;
 import com.example.bankcards.service.UserService;
+import com.example.bankcards.util.TransactionUtil;
 import com.example.bankcards.util.UserMapperFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -23,7 +27,12 @@ import java.util.UUID;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
+    private final CardRepository cardRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final RefreshTokenService refreshTokenService;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final CardResponseCache cardResponseCache;
 
     @Override
     @Transactional
@@ -55,8 +64,15 @@ public class UserServiceImpl implements UserService {
                 : null;
 
         UserMapperFactory.updateUser(user, request, encodedPassword);
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        if (encodedPassword != null) {
+            refreshTokenService.revokeAll(id);
+        }
 
-        return UserMapperFactory.toResponse(userRepository.save(user));
+        UserResponse response = UserMapperFactory.toResponse(userRepository.save(user));
+        cacheInvalidationBus.publish(CacheInvalidationBus.Topic.USER, id);
+        TransactionUtil.afterCommit(() -> userDetailsService.evictUser(id));
+        return response;
     }
 
     @Override
@@ -65,7 +81,11 @@ public class UserServiceImpl implements UserService {
         if (!userRepository.existsById(id)) {
             throw new UserNotFoundException(id);
         }
+        // Карты удаляются каскадом, их ключи нужно собрать до удаления
+        cardResponseCache.evictAfterCommit(cardRepository.findIdsByUserId(id));
         userRepository.deleteById(id);
+        cacheInvalidationBus.publish(CacheInvalidationBus.Topic.USER, id);
+        TransactionUtil.afterCommit(() -> userDetailsService.evictUser(id));
     }
 
     @Override
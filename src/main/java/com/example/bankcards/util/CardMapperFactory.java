@@ -3,12 +3,12 @@ package com.example.bankcards.util;
 import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardView;
 import lombok.experimental.UtilityClass;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.Random;
 
 @UtilityClass
 public class CardMapperFactory {
@@ -19,30 +19,27 @@ public class CardMapperFactory {
                 .number(CardMaskUtil.maskCardNumber(card.getNumber()))
                 .expirationDate(card.getExpirationDate())
                 .status(card.getStatus())
-                .balance(card.getBalance())
+                .balance(card.getTotalBalance().toBigDecimal())
                 .build();
     }
 
-    public Card toCard(User user, BigDecimal balance) {
+    public CardResponse toCardResponse(CardView card) {
+        return CardResponse.builder()
+                .id(card.id())
+                .number(CardMaskUtil.maskCardNumber(card.number()))
+                .expirationDate(card.expirationDate())
+                .status(card.status())
+                .balance(card.totalBalance().toBigDecimal())
+                .build();
+    }
+
+    public Card toCard(User user, String number, Money balance) {
         return Card.builder()
-                .number(generateRandomCardNumber())
+                .number(number)
                 .user(user)
                 .expirationDate(LocalDate.now().plusYears(3))
                 .status(CardStatus.ACTIVE)
                 .balance(balance)
                 .build();
     }
-
-    private String generateRandomCardNumber() {
-        Random random = new Random();
-        StringBuilder cardNumber = new StringBuilder();
-        for (int i = 0; i < 4; i++) {
-            int group = 1000 + random.nextInt(9000); // генерирует число от 1000 до 9999
-            cardNumber.append(group);
-            if (i < 3) {
-                cardNumber.append(" ");
-            }
-        }
-        return cardNumber.toString();
-    }
 }
@@ -0,0 +1,31 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.entity.Money;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+
+import java.io.IOException;
+
+// Принимает число или строку; больше двух знаков после запятой и переполнение — ошибка формата, а не округление
+public class MoneyDeserializer extends StdDeserializer<Money> {
+
+    public MoneyDeserializer() {
+        super(Money.class);
+    }
+
+    @Override
+    public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        try {
+            return switch (p.currentToken()) {
+                case VALUE_NUMBER_INT -> Money.of(p.getLongValue());
+                case VALUE_NUMBER_FLOAT -> Money.of(p.getDecimalValue());
+                case VALUE_STRING -> Money.parse(p.getText());
+                default -> (Money) ctxt.handleUnexpectedToken(Money.class, p);
+            };
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw InvalidFormatException.from(p, e.getMessage(), p.getText(), Money.class);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.entity.Money;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+// Параметры запроса вида ?balanceFrom=1000.00
+@Component
+public class StringToMoneyConverter implements Converter<String, Money> {
+
+    @Override
+    public Money convert(String source) {
+        return source.isBlank() ? null : Money.parse(source);
+    }
+}
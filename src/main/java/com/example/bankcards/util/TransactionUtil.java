@@ -0,0 +1,49 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.OperationOutcomeUnknownException;
+import lombok.experimental.UtilityClass;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@UtilityClass
+public class TransactionUtil {
+
+    public void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Выполняет действие в транзакции шаблона. Ошибки записи возникают до COMMIT и откатывают транзакцию;
+     * ошибка самого COMMIT (например, оборванное соединение) оставляет исход неизвестным
+     * и сообщается как OperationOutcomeUnknownException, чтобы её не приняли за отказ без изменений.
+     */
+    public <T> T executeReportingCommitOutcome(TransactionTemplate transactionTemplate, TransactionCallback<T> action) {
+        AtomicBoolean applied = new AtomicBoolean();
+        try {
+            return transactionTemplate.execute(status -> {
+                T result = action.doInTransaction(status);
+                status.flush();
+                applied.set(!status.isRollbackOnly());
+                return result;
+            });
+        } catch (RuntimeException e) {
+            if (applied.get()) {
+                throw new OperationOutcomeUnknownException(e);
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+-- Число полос баланса карты: 0 — все зачисления идут в cards.balance
+ALTER TABLE bankcards.cards
+    ADD COLUMN IF NOT EXISTS stripe_count INTEGER NOT NULL DEFAULT 0;
+
+-- Полосы баланса: зачисления на «горячую» карту распределяются по строкам, баланс карты — cards.balance плюс их сумма
+CREATE TABLE IF NOT EXISTS bankcards.card_balance_stripes (
+                                                              card_id UUID NOT NULL,
+                                                              stripe INTEGER NOT NULL,
+                                                              balance NUMERIC(19,2) NOT NULL DEFAULT 0,
+
+                                                              PRIMARY KEY (card_id, stripe),
+                                                              CONSTRAINT fk_card_balance_stripes_cards FOREIGN KEY (card_id)
+                                                                  REFERENCES bankcards.cards(id) ON DELETE CASCADE
+);
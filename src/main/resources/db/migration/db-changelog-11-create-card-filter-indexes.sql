@@ -0,0 +1,17 @@
+-- Индексы под фильтры CardSpecification и порядок (expiration_date, id) постраничной выдачи по курсору.
+-- CONCURRENTLY не блокирует запись в cards на время построения, поэтому changeset выполняется вне транзакции.
+-- Столбцы balance, version и stripe_count не индексируются: переводы обновляют их в каждой операции,
+-- и индекс по ним лишил бы такие обновления HOT-оптимизации.
+
+-- Карты пользователя, в том числе с диапазоном срока действия; заодно ускоряет каскадное удаление пользователя
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_cards_user_expiration
+    ON bankcards.cards (user_id, expiration_date, id);
+
+-- Все карты по сроку действия: выдача администратору и диапазон дат без других фильтров
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_cards_expiration
+    ON bankcards.cards (expiration_date, id);
+
+-- Заблокированных и просроченных карт мало, поэтому частичный индекс небольшой; для ACTIVE подходит idx_cards_expiration
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_cards_inactive_status_expiration
+    ON bankcards.cards (status, expiration_date, id)
+    WHERE status IN ('BLOCKED', 'EXPIRED');
@@ -0,0 +1,22 @@
+-- Прерванный CREATE INDEX CONCURRENTLY (таймаут, отмена, падение экземпляра) оставляет индекс в состоянии INVALID,
+-- а CREATE INDEX ... IF NOT EXISTS при повторе changeset 11 такой индекс не пересоздаёт. Поэтому перед каждым
+-- запуском миграций невалидные индексы changeset 11 удаляются. DROP INDEX CONCURRENTLY внутри DO недоступен,
+-- но невалидный индекс запросами не используется и удаляется быстро. Параллельное построение другим экземпляром
+-- исключено: Liquibase выполняет миграции под блокировкой databasechangeloglock.
+DO $$
+DECLARE
+    invalid_index TEXT;
+BEGIN
+    FOR invalid_index IN
+        SELECT c.relname
+          FROM pg_index i
+          JOIN pg_class c ON c.oid = i.indexrelid
+          JOIN pg_namespace n ON n.oid = c.relnamespace
+         WHERE n.nspname = 'bankcards'
+           AND c.relname IN ('idx_cards_user_expiration', 'idx_cards_expiration', 'idx_cards_inactive_status_expiration')
+           AND NOT i.indisvalid
+    LOOP
+        EXECUTE format('DROP INDEX bankcards.%I', invalid_index);
+    END LOOP;
+END
+$$;
@@ -0,0 +1,8 @@
+-- Номера блоков номеров карт: экземпляр приложения резервирует блок одним nextval и раздаёт номера из памяти.
+-- Размер блока задан в CardNumberAllocator и не должен меняться, иначе диапазоны блоков пересекутся
+CREATE SEQUENCE IF NOT EXISTS bankcards.card_number_block_seq
+    AS BIGINT
+    START WITH 0
+    MINVALUE 0
+    INCREMENT BY 1
+    NO CYCLE;
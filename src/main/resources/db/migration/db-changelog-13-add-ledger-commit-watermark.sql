@@ -0,0 +1,32 @@
+-- Окна контрольных точек идут по id записавшей транзакции, а не по created_at:
+-- строка со временем до конца окна могла зафиксироваться уже после точки и не попасть ни в одну.
+-- Существующие строки получают id транзакции миграции
+ALTER TABLE bankcards.card_transactions
+    ADD COLUMN IF NOT EXISTS xact_id BIGINT NOT NULL DEFAULT CAST(CAST(pg_current_xact_id() AS text) AS bigint);
+
+-- Хвост операций карты после контрольной точки
+CREATE INDEX IF NOT EXISTS idx_card_transactions_card_xact_id
+    ON bankcards.card_transactions (card_id, xact_id);
+
+-- id транзакций растут вместе со вставками, поэтому BRIN-индекс подходит для выборки окон
+CREATE INDEX IF NOT EXISTS idx_card_transactions_xact_id_brin
+    ON bankcards.card_transactions USING BRIN (xact_id);
+
+-- Точки, построенные по времени, выводятся из журнала и пересчитываются с его начала
+DELETE FROM bankcards.card_balance_checkpoints;
+
+-- Контрольная точка: баланс карты по всем операциям с xact_id < watermark,
+-- as_of — самое позднее created_at среди учтённых операций
+ALTER TABLE bankcards.card_balance_checkpoints
+    ADD COLUMN IF NOT EXISTS watermark BIGINT NOT NULL;
+
+ALTER TABLE bankcards.card_balance_checkpoints
+    DROP CONSTRAINT IF EXISTS card_balance_checkpoints_pkey;
+
+ALTER TABLE bankcards.card_balance_checkpoints
+    ADD PRIMARY KEY (card_id, watermark);
+
+DROP INDEX IF EXISTS bankcards.idx_card_balance_checkpoints_as_of;
+
+CREATE INDEX IF NOT EXISTS idx_card_balance_checkpoints_watermark
+    ON bankcards.card_balance_checkpoints (watermark);
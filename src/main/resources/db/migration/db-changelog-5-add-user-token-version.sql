@@ -0,0 +1,3 @@
+-- Версия токенов пользователя: увеличивается при изменении или удалении пользователя
+ALTER TABLE bankcards.users
+    ADD COLUMN IF NOT EXISTS token_version INTEGER NOT NULL DEFAULT 0;
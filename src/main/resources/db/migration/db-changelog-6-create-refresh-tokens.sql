@@ -0,0 +1,24 @@
+-- Таблица refresh-токенов: хранится только SHA-256 хеш токена
+CREATE TABLE IF NOT EXISTS bankcards.refresh_tokens (
+                                                        id UUID PRIMARY KEY,
+                                                        user_id UUID NOT NULL,
+                                                        token_hash VARCHAR(64) NOT NULL UNIQUE,
+                                                        family_id UUID NOT NULL,
+                                                        created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+                                                        expires_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+                                                        revoked_at TIMESTAMP WITHOUT TIME ZONE,
+
+                                                        CONSTRAINT fk_refresh_tokens_users FOREIGN KEY (user_id)
+                                                            REFERENCES bankcards.users(id) ON DELETE CASCADE
+);
+
+-- Индексы для массового отзыва по пользователю и по цепочке ротации
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_user_active
+    ON bankcards.refresh_tokens (user_id) WHERE revoked_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_family
+    ON bankcards.refresh_tokens (family_id);
+
+-- Индекс для очистки просроченных токенов
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_expires_at
+    ON bankcards.refresh_tokens (expires_at);
@@ -0,0 +1,3 @@
+-- Версия строки для оптимистической блокировки карт
+ALTER TABLE bankcards.cards
+    ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
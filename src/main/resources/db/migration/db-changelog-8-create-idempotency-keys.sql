@@ -0,0 +1,19 @@
+-- Ключи идемпотентности: результат запроса хранится до expires_at
+CREATE TABLE IF NOT EXISTS bankcards.idempotency_keys (
+                                                          id UUID PRIMARY KEY,
+                                                          user_id UUID NOT NULL,
+                                                          idempotency_key VARCHAR(255) NOT NULL,
+                                                          request_hash VARCHAR(64) NOT NULL,
+                                                          status VARCHAR(20) NOT NULL,
+                                                          response_body TEXT,
+                                                          created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+                                                          expires_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+
+                                                          CONSTRAINT uq_idempotency_keys_user_key UNIQUE (user_id, idempotency_key),
+                                                          CONSTRAINT fk_idempotency_keys_users FOREIGN KEY (user_id)
+                                                              REFERENCES bankcards.users(id) ON DELETE CASCADE
+);
+
+-- Индекс для очистки просроченных ключей
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires_at
+    ON bankcards.idempotency_keys (expires_at);
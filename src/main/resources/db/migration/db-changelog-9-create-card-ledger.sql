@@ -0,0 +1,38 @@
+-- Журнал операций по картам: только вставки, история сохраняется и после удаления карты
+CREATE SEQUENCE IF NOT EXISTS bankcards.card_transactions_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS bankcards.card_transactions (
+                                                           id BIGINT PRIMARY KEY,
+                                                           card_id UUID NOT NULL,
+                                                           transfer_id UUID,
+                                                           type VARCHAR(20) NOT NULL,
+                                                           amount NUMERIC(19,2) NOT NULL,
+                                                           created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+-- Хвост операций карты после контрольной точки
+CREATE INDEX IF NOT EXISTS idx_card_transactions_card_created_at
+    ON bankcards.card_transactions (card_id, created_at);
+
+-- Строки добавляются в порядке времени, поэтому BRIN-индекс компактен и подходит для выборки окон
+CREATE INDEX IF NOT EXISTS idx_card_transactions_created_at_brin
+    ON bankcards.card_transactions USING BRIN (created_at);
+
+-- Контрольные точки: баланс карты с учётом всех операций с created_at <= as_of
+CREATE TABLE IF NOT EXISTS bankcards.card_balance_checkpoints (
+                                                                  card_id UUID NOT NULL,
+                                                                  as_of TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+                                                                  balance NUMERIC(19,2) NOT NULL,
+                                                                  created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+
+                                                                  PRIMARY KEY (card_id, as_of)
+);
+
+CREATE INDEX IF NOT EXISTS idx_card_balance_checkpoints_as_of
+    ON bankcards.card_balance_checkpoints (as_of);
+
+-- Начальные остатки существующих карт, чтобы журнал сходился с cards.balance
+INSERT INTO bankcards.card_transactions (id, card_id, transfer_id, type, amount, created_at)
+SELECT nextval('bankcards.card_transactions_seq'), c.id, NULL, 'OPENING', c.balance, now()
+FROM bankcards.cards c
+WHERE NOT EXISTS (SELECT 1 FROM bankcards.card_transactions t WHERE t.card_id = c.id);
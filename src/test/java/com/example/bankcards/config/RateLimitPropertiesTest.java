@@ -0,0 +1,51 @@
+package com.example.bankcards.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitPropertiesTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(PropertiesConfiguration.class)
+            .withPropertyValues(
+                    "app.rate-limit.rules[0].name=login-ip",
+                    "app.rate-limit.rules[0].pattern=/api/auth/login");
+
+    @Test
+    void shouldBindValidRule() {
+        contextRunner
+                .withPropertyValues("app.rate-limit.rules[0].capacity=5", "app.rate-limit.rules[0].refill-period=1m")
+                .run(context -> assertThat(context.getBean(RateLimitProperties.class).getRules())
+                        .singleElement()
+                        .extracting(RateLimitProperties.Rule::getCapacity)
+                        .isEqualTo(5L));
+    }
+
+    @Test
+    void shouldRejectRule_whenCapacityIsNotPositive() {
+        contextRunner
+                .withPropertyValues("app.rate-limit.rules[0].capacity=0")
+                .run(context -> assertThat(context).hasFailed()
+                        .getFailure().rootCause().hasMessageContaining("capacity"));
+    }
+
+    @Test
+    void shouldRejectRule_whenRefillPeriodIsZero() {
+        contextRunner
+                .withPropertyValues("app.rate-limit.rules[0].capacity=5", "app.rate-limit.rules[0].refill-period=0s")
+                .run(context -> assertThat(context).hasFailed()
+                        .getFailure().rootCause().hasMessageContaining("refill-period must be positive"));
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(RateLimitProperties.class)
+    static class PropertiesConfiguration {
+    }
+}
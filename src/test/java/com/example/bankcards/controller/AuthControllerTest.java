@@ -1,9 +1,12 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.dto.RefreshTokenRequest;
 import com.example.bankcards.security.AppUserDetails;
 import com.example.bankcards.security.JwtServiceImpl;
 import com.example.bankcards.security.UserDetailsServiceImpl;
+import com.example.bankcards.service.RefreshTokenService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,6 +40,9 @@ class AuthControllerTest {
     @MockBean
     private UserDetailsServiceImpl userDetailsService;
 
+    @MockBean
+    private RefreshTokenService refreshTokenService;
+
     @Test
     void login_shouldReturnToken() throws Exception {
         AuthRequest request = new AuthRequest("test@mail.com", "password");
@@ -44,11 +50,37 @@ class AuthControllerTest {
 
         when(userDetailsService.loadUserByUsername(request.getEmail())).thenReturn(userDetails);
         when(jwtService.generateJwtToken(userDetails)).thenReturn("jwt-token");
+        when(refreshTokenService.issue(userDetails.getId())).thenReturn("refresh-token");
 
         mockMvc.perform(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(new ObjectMapper().writeValueAsString(request)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.token").value("jwt-token"));
+                .andExpect(jsonPath("$.token").value("jwt-token"))
+                .andExpect(jsonPath("$.refreshToken").value("refresh-token"));
+    }
+
+    @Test
+    void refresh_shouldReturnNewTokens() throws Exception {
+        when(refreshTokenService.refresh("old-refresh-token"))
+                .thenReturn(new AuthResponse("new-jwt-token", "new-refresh-token"));
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(new RefreshTokenRequest("old-refresh-token"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("new-jwt-token"))
+                .andExpect(jsonPath("$.refreshToken").value("new-refresh-token"));
+    }
+
+    @Test
+    void refresh_shouldReturnUnauthorized_whenTokenRejected() throws Exception {
+        when(refreshTokenService.refresh("reused-token"))
+                .thenThrow(new com.example.bankcards.exception.AuthenticationException());
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(new RefreshTokenRequest("reused-token"))))
+                .andExpect(status().isUnauthorized());
     }
 }
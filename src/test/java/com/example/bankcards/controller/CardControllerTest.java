@@ -1,14 +1,29 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.BulkCardRequest;
+import com.example.bankcards.dto.BulkCardResponse;
+import com.example.bankcards.dto.CardChunkResult;
+import com.example.bankcards.dto.CardExportFormat;
 import com.example.bankcards.dto.CardFilter;
 import com.example.bankcards.dto.CardRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSlice;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResult;
 import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.exception.CardExportLimitExceededException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.exception.OperationOutcomeUnknownException;
 import com.example.bankcards.security.AppUserDetails;
 import com.example.bankcards.security.JwtServiceImpl;
 import com.example.bankcards.security.UserDetailsServiceImpl;
+import com.example.bankcards.service.CardExport;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.IdempotencyService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,12 +38,19 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -53,6 +75,9 @@ class CardControllerTest {
     @MockBean
     private CardService cardService;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     private final ObjectMapper mapper = new ObjectMapper();
 
     private UUID currentUserId;
@@ -92,6 +117,79 @@ class CardControllerTest {
                 .andExpect(jsonPath("$.number").value("1111222233334444"));
     }
 
+    @Test
+    void createCard_shouldReturnBadRequest_whenBalanceHasMoreThanTwoDecimals() throws Exception {
+        CardRequest request = CardRequest.builder()
+                .userId(UUID.randomUUID())
+                .balance(new BigDecimal("500.001"))
+                .build();
+
+        mockMvc.perform(post("/api/cards")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage").value(startsWith("balance:")));
+
+        verifyNoInteractions(cardService);
+    }
+
+    @Test
+    void createCards_shouldReturnResultPerChunk() throws Exception {
+        BulkCardRequest request = new BulkCardRequest();
+        request.setCards(List.of(
+                new CardRequest(UUID.randomUUID(), new BigDecimal("100.00")),
+                new CardRequest(UUID.randomUUID(), new BigDecimal("200.00"))));
+        UUID cardId = UUID.randomUUID();
+
+        when(cardService.createCards(any(BulkCardRequest.class))).thenReturn(new BulkCardResponse(1, 1, List.of(
+                new CardChunkResult(0, 1, true, List.of(cardId), null),
+                new CardChunkResult(1, 1, false, List.of(), "Connection is closed"))));
+
+        mockMvc.perform(post("/api/cards/bulk")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.chunks[0].cardIds[0]").value(cardId.toString()))
+                .andExpect(jsonPath("$.chunks[1].committed").value(false));
+    }
+
+    @Test
+    void createCards_shouldReturnBadRequest_whenEmpty() throws Exception {
+        BulkCardRequest request = new BulkCardRequest();
+        request.setCards(List.of());
+
+        mockMvc.perform(post("/api/cards/bulk")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cardService);
+    }
+
+    @Test
+    void createCards_shouldReturnBadRequest_whenAnyBalanceIsMissingOrNegative() throws Exception {
+        BulkCardRequest request = new BulkCardRequest();
+        request.setCards(List.of(
+                new CardRequest(UUID.randomUUID(), new BigDecimal("100.00")),
+                new CardRequest(UUID.randomUUID(), new BigDecimal("-1.00"))));
+
+        mockMvc.perform(post("/api/cards/bulk")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage").value(startsWith("cards[1].balance:")));
+
+        request.setCards(List.of(new CardRequest(UUID.randomUUID(), null)));
+        mockMvc.perform(post("/api/cards/bulk")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage").value(startsWith("cards[0].balance:")));
+
+        verifyNoInteractions(cardService);
+    }
+
     @Test
     void getCardById_shouldReturnCard() throws Exception {
         UUID id = UUID.randomUUID();
@@ -159,6 +257,21 @@ class CardControllerTest {
                 .andExpect(jsonPath("$.status").value("ACTIVE"));
     }
 
+    @Test
+    void setBalanceStripes_shouldReturnCard() throws Exception {
+        UUID cardId = UUID.randomUUID();
+        CardResponse response = CardResponse.builder()
+                .id(cardId)
+                .balance(BigDecimal.valueOf(100))
+                .build();
+
+        when(cardService.setBalanceStripes(cardId, 8)).thenReturn(response);
+
+        mockMvc.perform(put("/api/cards/{cardId}/stripes", cardId).param("count", "8"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(100));
+    }
+
     @Test
     void deleteCard_shouldReturnNoContent() throws Exception {
         UUID cardId = UUID.randomUUID();
@@ -183,6 +296,80 @@ class CardControllerTest {
                 .andExpect(jsonPath("$.content.length()").value(1));
     }
 
+    @Test
+    void scrollAllCards_shouldPassCursorAndReturnNextCursor() throws Exception {
+        CardResponse response = CardResponse.builder()
+                .id(UUID.randomUUID())
+                .build();
+
+        when(cardService.scrollAllCards(argThat(filter ->
+                "abc".equals(filter.getCursor()) && filter.getPageSize() == 1 && filter.getIncludeTotal())))
+                .thenReturn(new CardSlice(List.of(response), "def", true, 10L));
+
+        mockMvc.perform(get("/api/cards/scroll?cursor=abc&pageSize=1&includeTotal=true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.nextCursor").value("def"))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.totalElements").value(10));
+    }
+
+    @Test
+    void exportCards_shouldStreamBodyWithFormatHeaders() throws Exception {
+        CardExport export = mock(CardExport.class);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("id\n".getBytes());
+            return null;
+        }).when(export).writeTo(any());
+        when(cardService.exportCards(
+                argThat(filter -> filter.getStatus() == CardStatus.BLOCKED), eq(CardExportFormat.CSV)))
+                .thenReturn(export);
+
+        MvcResult result = mockMvc.perform(get("/api/cards/export?format=CSV&status=BLOCKED"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // Собственный таймаут выгрузки вместо общего для асинхронных запросов
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(Duration.ofMinutes(30).toMillis());
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"cards.csv\""))
+                .andExpect(content().string("id\n"));
+        verify(export).close();
+    }
+
+    @Test
+    void exportCards_shouldReturnTooManyRequests_whenExportLimitReached() throws Exception {
+        when(cardService.exportCards(any(CardFilter.class), eq(CardExportFormat.NDJSON)))
+                .thenThrow(new CardExportLimitExceededException());
+
+        mockMvc.perform(get("/api/cards/export"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().doesNotExist("Content-Disposition"))
+                .andExpect(jsonPath("$.errorMessage").value("Too many card exports are running, please retry later."));
+    }
+
+    @Test
+    void scrollAllMyCards_shouldReturnBadRequest_whenCursorIsMalformed() throws Exception {
+        when(cardService.scrollAllMyCards(eq(currentUserId), any(CardFilter.class)))
+                .thenThrow(new InvalidCursorException());
+
+        mockMvc.perform(get("/api/cards/my/scroll?cursor=broken"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void scrollAllMyCards_shouldUseCurrentUser() throws Exception {
+        when(cardService.scrollAllMyCards(eq(currentUserId), any(CardFilter.class)))
+                .thenReturn(new CardSlice(List.of(), null, false, null));
+
+        mockMvc.perform(get("/api/cards/my/scroll?userId={userId}", UUID.randomUUID()))
+                .andExpect(status().isOk());
+
+        verify(cardService).scrollAllMyCards(eq(currentUserId), any(CardFilter.class));
+    }
+
     @Test
     void requestCardBlock_shouldCallService() throws Exception {
         UUID cardId = UUID.randomUUID();
@@ -200,16 +387,134 @@ class CardControllerTest {
         TransferRequest request = new TransferRequest();
         request.setFromCardId(UUID.randomUUID());
         request.setToCardId(UUID.randomUUID());
-        request.setAmount(new BigDecimal("100.00"));
+        request.setAmount(Money.parse("100.00"));
 
-        doNothing().when(cardService).transferBetweenMyCards(request, currentUserId);
+        when(cardService.transferBetweenMyCardsAsync(request, currentUserId))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        MvcResult result = mockMvc.perform(post("/api/cards/transfer")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        verify(cardService).transferBetweenMyCardsAsync(request, currentUserId);
+    }
+
+    @Test
+    void transferBetweenMyCards_shouldMapAsyncFailure() throws Exception {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(UUID.randomUUID());
+        request.setToCardId(UUID.randomUUID());
+        request.setAmount(Money.parse("100.00"));
+
+        when(cardService.transferBetweenMyCardsAsync(request, currentUserId))
+                .thenReturn(CompletableFuture.failedFuture(new InsufficientFundsException()));
+
+        MvcResult result = mockMvc.perform(post("/api/cards/transfer")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void transferBetweenMyCards_shouldReturnBadRequest_whenAmountMissing() throws Exception {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(UUID.randomUUID());
+        request.setToCardId(UUID.randomUUID());
 
         mockMvc.perform(post("/api/cards/transfer")
                         .contentType("application/json")
                         .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cardService);
+    }
+
+    @Test
+    void transferBetweenMyCards_shouldGoThroughIdempotencyService_whenKeyPresent() throws Exception {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(UUID.randomUUID());
+        request.setToCardId(UUID.randomUUID());
+        request.setAmount(Money.parse("100.00"));
+
+        AtomicBoolean recorded = new AtomicBoolean();
+        when(idempotencyService.execute(eq(currentUserId), eq("retry-1"), eq("transfer"), eq(request),
+                eq(Void.class), any()))
+                .thenAnswer(invocation -> invocation.<IdempotencyService.Action<Void>>getArgument(5)
+                        .run(result -> recorded.set(true)));
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return null;
+        }).when(cardService).transferBetweenMyCards(eq(request), eq(currentUserId), any());
+
+        mockMvc.perform(post("/api/cards/transfer")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
                 .andExpect(status().isOk());
 
-        verify(cardService).transferBetweenMyCards(request, currentUserId);
+        // Ключ завершается из транзакции перевода
+        assertThat(recorded).isTrue();
+    }
+
+    @Test
+    void transferBetweenMyCards_shouldReturnInternalError_whenOutcomeUnknown() throws Exception {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(UUID.randomUUID());
+        request.setToCardId(UUID.randomUUID());
+        request.setAmount(Money.parse("100.00"));
+
+        when(idempotencyService.execute(eq(currentUserId), eq("retry-1"), eq("transfer"), eq(request),
+                eq(Void.class), any()))
+                .thenThrow(new OperationOutcomeUnknownException());
+
+        mockMvc.perform(post("/api/cards/transfer")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isInternalServerError())
+                .andExpect(header().doesNotExist("Retry-After"));
+    }
+
+    @Test
+    void transferBatchBetweenMyCards_shouldReturnPerItemResults() throws Exception {
+        TransferRequest transfer = new TransferRequest();
+        transfer.setFromCardId(UUID.randomUUID());
+        transfer.setToCardId(UUID.randomUUID());
+        transfer.setAmount(Money.parse("10.00"));
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setTransfers(List.of(transfer, transfer));
+
+        when(cardService.transferBatchBetweenMyCards(any(BatchTransferRequest.class), eq(currentUserId)))
+                .thenReturn(new BatchTransferResponse(true, 1, 1, List.of(
+                        new TransferResult(0, TransferResult.Status.SUCCESS, null),
+                        new TransferResult(1, TransferResult.Status.FAILED, "Insufficient funds on the card"))));
+
+        mockMvc.perform(post("/api/cards/transfers/batch")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed").value(true))
+                .andExpect(jsonPath("$.results[1].status").value("FAILED"));
+    }
+
+    @Test
+    void transferBatchBetweenMyCards_shouldReturnBadRequest_whenEmpty() throws Exception {
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setTransfers(List.of());
+
+        mockMvc.perform(post("/api/cards/transfers/batch")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cardService);
     }
 
 
@@ -0,0 +1,81 @@
+package com.example.bankcards.entity;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntSupplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Сложение и сравнение сумм на горячем пути перевода: Money на long против BigDecimal.
+ * Запуск: mvn test -Dtest=MoneyBenchmarkTest -Dbenchmark=true
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MoneyBenchmarkTest {
+
+    private static final int AMOUNTS = 1_024;
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 10_000;
+
+    @Test
+    void moneyShouldBeFasterThanBigDecimal() {
+        Money[] money = new Money[AMOUNTS];
+        BigDecimal[] decimals = new BigDecimal[AMOUNTS];
+        for (int i = 0; i < AMOUNTS; i++) {
+            money[i] = Money.ofMinor(ThreadLocalRandom.current().nextLong(1, 1_000_000));
+            decimals[i] = money[i].toBigDecimal();
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sumMoney(money);
+            sumDecimals(decimals);
+        }
+        double bigDecimal = measure(() -> sumDecimals(decimals).signum());
+        double longBased = measure(() -> sumMoney(money).signum());
+
+        log.info("Add and compare, ns/op: BigDecimal={}, Money={}",
+                "%.2f".formatted(bigDecimal), "%.2f".formatted(longBased));
+
+        assertThat(sumMoney(money).toBigDecimal()).isEqualByComparingTo(sumDecimals(decimals));
+        assertThat(longBased).isLessThan(bigDecimal);
+    }
+
+    // Как при проверке средств: сравнение с суммой, затем списание и зачисление
+    private Money sumMoney(Money[] amounts) {
+        Money balance = Money.ZERO;
+        for (Money amount : amounts) {
+            if (!balance.isLessThan(amount)) {
+                balance = balance.minus(amount);
+            }
+            balance = balance.plus(amount).plus(amount);
+        }
+        return balance;
+    }
+
+    private BigDecimal sumDecimals(BigDecimal[] amounts) {
+        BigDecimal balance = BigDecimal.ZERO;
+        for (BigDecimal amount : amounts) {
+            if (balance.compareTo(amount) >= 0) {
+                balance = balance.subtract(amount);
+            }
+            balance = balance.add(amount).add(amount);
+        }
+        return balance;
+    }
+
+    private double measure(IntSupplier round) {
+        long blackhole = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            blackhole += round.getAsInt();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(blackhole).isPositive();
+        return (double) elapsed / ((long) MEASURED_ROUNDS * AMOUNTS);
+    }
+}
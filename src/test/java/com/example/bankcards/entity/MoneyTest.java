@@ -0,0 +1,76 @@
+package com.example.bankcards.entity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void parse_shouldReadMinorUnits() {
+        assertThat(Money.parse("1234.5").getMinorUnits()).isEqualTo(123_450);
+        assertThat(Money.parse("-0.05").getMinorUnits()).isEqualTo(-5);
+        assertThat(Money.parse("+7").getMinorUnits()).isEqualTo(700);
+        assertThat(Money.parse(".99").getMinorUnits()).isEqualTo(99);
+    }
+
+    @Test
+    void parse_shouldRejectInvalidAmounts() {
+        assertThatThrownBy(() -> Money.parse("1.234")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.parse("92233720368547758.08")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.parse("1e3")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("-")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("1.2.3")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void toString_shouldPrintTwoFractionDigits() {
+        assertThat(Money.ofMinor(0)).hasToString("0.00");
+        assertThat(Money.ofMinor(-5)).hasToString("-0.05");
+        assertThat(Money.ofMinor(123_450)).hasToString("1234.50");
+        assertThat(Money.ofMinor(Long.MIN_VALUE)).hasToString("-92233720368547758.08");
+    }
+
+    @Test
+    void of_shouldConvertBigDecimalWithoutRounding() {
+        assertThat(Money.of(new BigDecimal("40.5"))).isEqualTo(Money.ofMinor(4050));
+        assertThat(Money.of(new BigDecimal("10.000"))).isEqualTo(Money.of(10));
+        assertThatThrownBy(() -> Money.of(new BigDecimal("0.001"))).isInstanceOf(ArithmeticException.class);
+        assertThat(Money.ofMinor(4050).toBigDecimal()).isEqualTo(new BigDecimal("40.50"));
+    }
+
+    @Test
+    void arithmetic_shouldFailOnOverflow() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+
+        assertThat(Money.of(100).minus(Money.parse("30.25"))).isEqualTo(Money.parse("69.75"));
+        assertThatThrownBy(() -> max.plus(Money.ofMinor(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MIN_VALUE).negate()).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void arithmetic_shouldRejectDifferentCurrencies() {
+        Money rubles = Money.of(10);
+        Money dollars = Money.ofMinor(1000, "USD");
+
+        assertThat(rubles).isNotEqualTo(dollars);
+        assertThatThrownBy(() -> rubles.plus(dollars)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rubles.isLessThan(dollars)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void json_shouldKeepNumericShape() throws Exception {
+        assertThat(objectMapper.writeValueAsString(Money.parse("100.5"))).isEqualTo("100.50");
+        assertThat(objectMapper.readValue("100", Money.class)).isEqualTo(Money.of(100));
+        assertThat(objectMapper.readValue("100.25", Money.class)).isEqualTo(Money.ofMinor(10_025));
+        assertThat(objectMapper.readValue("\"0.10\"", Money.class)).isEqualTo(Money.ofMinor(10));
+        assertThatThrownBy(() -> objectMapper.readValue("0.001", Money.class))
+                .isInstanceOf(InvalidFormatException.class);
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardCursor;
+import com.example.bankcards.dto.CardFilter;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Планы запросов выдачи карт на заполненной базе: ни одно поддерживаемое сочетание фильтров
+ * не должно читать cards последовательным сканированием. Проверяется SQL, который генерирует Hibernate,
+ * с фактическими параметрами. Фильтр только по балансу без пользователя, статуса или срока действия
+ * не поддерживается: balance не индексируется (см. db-changelog-11).
+ * Запуск: BANKCARDS_IT_DB=true mvn test -Dtest=CardQueryPlanTest
+ */
+@SpringBootTest
+@Import(CardQueryPlanTest.SqlCaptureConfiguration.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_IT_DB", matches = "true")
+class CardQueryPlanTest {
+
+    private static final int USERS = 1_000;
+    private static final int CARDS = 50_000;
+    private static final int PAGE_SIZE = 20;
+    private static final String EMAIL_PREFIX = "plan-" + UUID.randomUUID() + "-";
+
+    // SQL с подставленными параметрами для запросов, выполненных в capture()
+    private static final ThreadLocal<List<String>> CAPTURED = new ThreadLocal<>();
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private UUID userId;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("""
+                INSERT INTO users (id, first_name, last_name, email, password, role, created_at)
+                SELECT gen_random_uuid(), 'Plan', 'User', ? || g || '@mail.com', 'not-used', 'ROLE_USER', now()
+                  FROM generate_series(1, ?) g
+                """, EMAIL_PREFIX, USERS);
+        // Каждая 50-я карта заблокирована, каждая 97-я просрочена, сроки действия распределены на 1500 дней
+        jdbcTemplate.update("""
+                INSERT INTO cards (id, number, user_id, expiration_date, status, balance)
+                SELECT gen_random_uuid(), 'P' || substr(md5(random()::text), 1, 18), u.id,
+                       current_date + g % 1500,
+                       CASE WHEN g % 50 = 0 THEN 'BLOCKED' WHEN g % 97 = 0 THEN 'EXPIRED' ELSE 'ACTIVE' END,
+                       g % 100000
+                  FROM generate_series(1, ?) g
+                  JOIN (SELECT id, row_number() OVER (ORDER BY id) AS n FROM users WHERE email LIKE ? || '%') u
+                    ON u.n = g % ? + 1
+                """, CARDS, EMAIL_PREFIX, USERS);
+        jdbcTemplate.execute("ANALYZE cards");
+        userId = jdbcTemplate.queryForObject(
+                "SELECT id FROM users WHERE email = ?", UUID.class, EMAIL_PREFIX + "1@mail.com");
+    }
+
+    @AfterAll
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM users WHERE email LIKE ? || '%'", EMAIL_PREFIX);
+    }
+
+    static Stream<String> userFilters() {
+        return Stream.of("user", "user+status=ACTIVE", "user+expiration", "user+balance", "user+status=BLOCKED+expiration+balance");
+    }
+
+    static Stream<String> allFilters() {
+        return Stream.concat(userFilters(),
+                Stream.of("none", "status=ACTIVE", "status=BLOCKED", "status=EXPIRED", "expiration",
+                        "expiration+balance", "status=BLOCKED+expiration", "status=ACTIVE+expiration+balance"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("allFilters")
+    void firstPageByCursor_shouldUseIndex(String filterName) {
+        assertNoSeqScan(filterName, repository -> repository.findAfter(spec(filterName), null, PAGE_SIZE + 1));
+    }
+
+    @ParameterizedTest
+    @MethodSource("allFilters")
+    void deepPageByCursor_shouldUseIndex(String filterName) {
+        CardCursor deep = new CardCursor(LocalDate.now().plusDays(1_200), UUID.randomUUID());
+        assertNoSeqScan(filterName, repository -> repository.findAfter(spec(filterName), deep, PAGE_SIZE + 1));
+    }
+
+    // Страница по номеру с COUNT для карт пользователя — тот путь, который раньше сканировал всю таблицу
+    @ParameterizedTest
+    @MethodSource("userFilters")
+    void offsetPageOfUserCards_shouldUseIndex(String filterName) {
+        assertNoSeqScan(filterName, repository -> repository.findViews(spec(filterName), PageRequest.of(1, PAGE_SIZE)));
+    }
+
+    // Страница по номеру для администратора с диапазоном срока действия, вместе с COUNT по тому же фильтру
+    @ParameterizedTest
+    @ValueSource(strings = {"expiration", "status=ACTIVE+expiration", "status=BLOCKED+expiration", "expiration+balance"})
+    void offsetPageByExpirationRange_shouldUseIndex(String filterName) {
+        assertNoSeqScan(filterName, repository -> repository.findViews(spec(filterName), PageRequest.of(1, PAGE_SIZE)));
+    }
+
+    private void assertNoSeqScan(String filterName, Function<CardRepository, ?> query) {
+        List<String> statements = capture(() -> query.apply(cardRepository));
+        assertThat(statements).as("captured statements").isNotEmpty();
+        for (String sql : statements) {
+            JsonNode plan = explain(sql);
+            assertThat(seqScannedRelations(plan, new ArrayList<>()))
+                    .as("filter %s, plan %s", filterName, plan.toPrettyString())
+                    .doesNotContain("cards");
+        }
+    }
+
+    private Specification<Card> spec(String filterName) {
+        CardFilter filter = new CardFilter();
+        for (String part : filterName.split("\\+")) {
+            switch (part) {
+                case "none" -> {
+                }
+                case "user" -> filter.setUserId(userId);
+                case "status=ACTIVE" -> filter.setStatus(CardStatus.ACTIVE);
+                case "status=BLOCKED" -> filter.setStatus(CardStatus.BLOCKED);
+                case "status=EXPIRED" -> filter.setStatus(CardStatus.EXPIRED);
+                case "expiration" -> {
+                    filter.setExpirationDateFrom(LocalDate.now().plusDays(100));
+                    filter.setExpirationDateTo(LocalDate.now().plusDays(200));
+                }
+                case "balance" -> {
+                    filter.setBalanceFrom(Money.of(100));
+                    filter.setBalanceTo(Money.of(5_000));
+                }
+                default -> throw new IllegalArgumentException(part);
+            }
+        }
+        return CardSpecification.withFilter(filter);
+    }
+
+    private List<String> capture(Runnable action) {
+        List<String> statements = new ArrayList<>();
+        CAPTURED.set(statements);
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> action.run());
+        } finally {
+            CAPTURED.remove();
+        }
+        return statements;
+    }
+
+    private JsonNode explain(String sql) {
+        String json = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class);
+        try {
+            return objectMapper.readTree(json).get(0).get("Plan");
+        } catch (Exception e) {
+            throw new IllegalStateException(json, e);
+        }
+    }
+
+    private List<String> seqScannedRelations(JsonNode node, List<String> relations) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            relations.add(node.path("Relation Name").asText());
+        }
+        node.path("Plans").forEach(child -> seqScannedRelations(child, relations));
+        return relations;
+    }
+
+    /**
+     * Оборачивает DataSource: при выполнении запроса внутри capture() запоминает его текст.
+     * PgPreparedStatement.toString() возвращает SQL с подставленными значениями параметров.
+     */
+    @TestConfiguration
+    static class SqlCaptureConfiguration {
+
+        @Bean
+        static BeanPostProcessor sqlCapturingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new CapturingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    private static class CapturingDataSource extends DelegatingDataSource {
+
+        CapturingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return proxy(Connection.class, connection, (method, result) ->
+                    result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")
+                            ? proxy(PreparedStatement.class, statement, (executed, ignored) -> {
+                                List<String> captured = CAPTURED.get();
+                                if (captured != null && executed.getName().equals("executeQuery")) {
+                                    captured.add(statement.toString());
+                                }
+                                return ignored;
+                            })
+                            : result);
+        }
+
+        private static <T> T proxy(Class<T> type, T target, InvocationListener listener) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, method, args) -> {
+                try {
+                    return listener.afterInvocation(method, method.invoke(target, args));
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }));
+        }
+
+        @FunctionalInterface
+        private interface InvocationListener {
+            Object afterInvocation(Method method, Object result);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.bankcards.security;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class JwtRejectionTrackerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Logger logger = (Logger) LoggerFactory.getLogger(JwtRejectionTracker.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void reject_shouldCountEachReasonSeparately() {
+        JwtRejectionTracker tracker = new JwtRejectionTracker(meterRegistry, Duration.ofHours(1));
+
+        tracker.reject(JwtRejectionTracker.Reason.EXPIRED, null);
+        tracker.reject(JwtRejectionTracker.Reason.EXPIRED, null);
+        tracker.reject(JwtRejectionTracker.Reason.MALFORMED, "bad token");
+
+        assertThat(rejected("expired")).isEqualTo(2);
+        assertThat(rejected("malformed")).isEqualTo(1);
+        assertThat(rejected("invalid_signature")).isZero();
+    }
+
+    @Test
+    void reject_shouldLogOncePerReasonWithinSampleInterval() {
+        JwtRejectionTracker tracker = new JwtRejectionTracker(meterRegistry, Duration.ofHours(1));
+
+        tracker.reject(JwtRejectionTracker.Reason.MALFORMED, "first");
+        tracker.reject(JwtRejectionTracker.Reason.MALFORMED, "second");
+        tracker.reject(JwtRejectionTracker.Reason.MALFORMED, "third");
+        tracker.reject(JwtRejectionTracker.Reason.INVALID_SIGNATURE, "forged");
+
+        assertThat(warnings())
+                .containsExactly(
+                        "JWT rejected (MALFORMED): first; further rejections are summarized",
+                        "JWT rejected (INVALID_SIGNATURE): forged; further rejections are summarized");
+        assertThat(rejected("malformed")).isEqualTo(3);
+    }
+
+    @Test
+    void reject_shouldLogAgain_whenSampleIntervalHasPassed() {
+        JwtRejectionTracker tracker = new JwtRejectionTracker(meterRegistry, Duration.ZERO);
+
+        tracker.reject(JwtRejectionTracker.Reason.MALFORMED, "first");
+        tracker.reject(JwtRejectionTracker.Reason.MALFORMED, "second");
+
+        assertThat(warnings()).hasSize(2);
+    }
+
+    @Test
+    void reject_shouldNeverLogExpiredTokensIndividually() {
+        JwtRejectionTracker tracker = new JwtRejectionTracker(meterRegistry, Duration.ZERO);
+
+        tracker.reject(JwtRejectionTracker.Reason.EXPIRED, null);
+
+        assertThat(warnings()).isEmpty();
+        assertThat(rejected("expired")).isEqualTo(1);
+    }
+
+    @Test
+    void logSummary_shouldReportCountsSinceLastSummaryAndReset() {
+        JwtRejectionTracker tracker = new JwtRejectionTracker(meterRegistry, Duration.ofHours(1));
+        tracker.reject(JwtRejectionTracker.Reason.EXPIRED, null);
+        tracker.reject(JwtRejectionTracker.Reason.EXPIRED, null);
+        tracker.reject(JwtRejectionTracker.Reason.UNSUPPORTED, "jwe");
+
+        tracker.logSummary();
+        tracker.logSummary();
+
+        List<String> summaries = appender.list.stream()
+                .filter(event -> event.getLevel() == Level.INFO)
+                .map(ILoggingEvent::getFormattedMessage)
+                .toList();
+        assertThat(summaries).containsExactly("JWT rejections since last summary: 3 (unsupported=1, expired=2)");
+        // Метрики накопительные и сводкой не сбрасываются
+        assertThat(rejected("expired")).isEqualTo(2);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("app.jwt.rejected").tag("reason", reason).counter().count();
+    }
+
+    private List<String> warnings() {
+        return appender.list.stream()
+                .filter(event -> event.getLevel() == Level.WARN)
+                .map(ILoggingEvent::getFormattedMessage)
+                .toList();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.bankcards.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Микробенчмарк проверки JWT. Запуск: mvn test -Dtest=JwtServiceImplBenchmarkTest -Dbenchmark=true
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class JwtServiceImplBenchmarkTest {
+
+    private static final String SECRET = "v3ry_s3cur3_and_l0ng_s3cr3t_k3y_with_32_chr_min";
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 100_000;
+
+    @Test
+    void compareVerificationPaths() {
+        JwtServiceImpl uncached = JwtServiceImplTest.createService(Duration.ofHours(1), false);
+        JwtServiceImpl cached = JwtServiceImplTest.createService(Duration.ofHours(1), true);
+        String token = uncached.generateJwtToken(
+                new AppUserDetails(UUID.randomUUID(), "user@mail.com", "pass", List.of()));
+
+        double doubleParse = measure(() -> legacyDoubleParse(token));
+        double singleParse = measure(() -> uncached.parseClaims(token).orElseThrow().subject());
+        double cachedParse = measure(() -> cached.parseClaims(token).orElseThrow().subject());
+
+        log.info("JWT verification, ns/op: double parseClaimsJws={}, single parse={}, cached={}",
+                "%.0f".formatted(doubleParse), "%.0f".formatted(singleParse), "%.0f".formatted(cachedParse));
+
+        assertThat(cachedParse).isLessThan(doubleParse);
+    }
+
+    // Прежний путь: validate() и getUsername() с новым ключом и парсером на каждый вызов
+    private String legacyDoubleParse(String token) {
+        Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token);
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody()
+                .getSubject();
+    }
+
+    private double measure(Supplier<String> operation) {
+        long blackhole = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            blackhole += operation.get().length();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            blackhole += operation.get().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(blackhole).isPositive();
+        return (double) elapsed / MEASURED_ITERATIONS;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.bankcards.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+class JwtServiceImplTest {
+
+    private static final String SECRET = "v3ry_s3cur3_and_l0ng_s3cr3t_k3y_with_32_chr_min";
+
+    private JwtServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = createService(Duration.ofHours(1));
+    }
+
+    @Test
+    void parseClaims_shouldReturnClaims_whenTokenIsValid() {
+        UUID userId = UUID.randomUUID();
+        AppUserDetails userDetails = new AppUserDetails(userId, "user@mail.com", "pass",
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+        String token = service.generateJwtToken(userDetails);
+
+        JwtClaims claims = service.parseClaims(token).orElseThrow();
+
+        assertThat(claims.subject()).isEqualTo("user@mail.com");
+        assertThat(claims.userId()).isEqualTo(userId);
+        assertThat(claims.roles()).containsExactly("ROLE_USER");
+        assertThat(claims.expiresAt()).isNotNull();
+    }
+
+    @Test
+    void parseClaims_shouldReturnEmpty_whenSignatureIsInvalid() {
+        String token = service.generateJwtToken(
+                new AppUserDetails(UUID.randomUUID(), "user@mail.com", "pass", List.of()));
+        String tampered = token.substring(0, token.length() - 2) + "xx";
+
+        assertThat(service.parseClaims(tampered)).isEmpty();
+        assertThat(service.validate(tampered)).isFalse();
+    }
+
+    @Test
+    void parseClaims_shouldReturnEmpty_whenTokenExpired() {
+        JwtServiceImpl expiredService = createService(Duration.ofSeconds(-10));
+        String token = expiredService.generateJwtToken(
+                new AppUserDetails(UUID.randomUUID(), "user@mail.com", "pass", List.of()));
+
+        assertThat(service.parseClaims(token)).isEmpty();
+    }
+
+    @Test
+    void parseClaims_shouldReturnEmpty_whenTokenMalformed() {
+        assertThat(service.parseClaims("not-a-token")).isEmpty();
+        assertThat(service.parseClaims("")).isEmpty();
+    }
+
+    @Test
+    void parseClaims_shouldReturnCachedClaims_whenTokenSeenBefore() {
+        JwtServiceImpl cachingService = createService(Duration.ofHours(1), true);
+        String token = cachingService.generateJwtToken(
+                new AppUserDetails(UUID.randomUUID(), "user@mail.com", "pass", List.of()));
+
+        JwtClaims first = cachingService.parseClaims(token).orElseThrow();
+        JwtClaims second = cachingService.parseClaims(token).orElseThrow();
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void parseClaims_shouldNotTrustCache_forDifferentToken() {
+        JwtServiceImpl cachingService = createService(Duration.ofHours(1), true);
+        String token = cachingService.generateJwtToken(
+                new AppUserDetails(UUID.randomUUID(), "user@mail.com", "pass", List.of()));
+        cachingService.parseClaims(token);
+
+        String tampered = token.substring(0, token.length() - 2) + "xx";
+
+        assertThat(cachingService.parseClaims(tampered)).isEmpty();
+    }
+
+    private JwtServiceImpl createService(Duration expiration) {
+        return createService(expiration, false);
+    }
+
+    static JwtServiceImpl createService(Duration expiration, boolean claimsCacheEnabled) {
+        JwtServiceImpl jwtService = new JwtServiceImpl(
+                new JwtRejectionTracker(new SimpleMeterRegistry(), Duration.ofSeconds(10)));
+        ReflectionTestUtils.setField(jwtService, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "tokenExpiration", expiration);
+        ReflectionTestUtils.setField(jwtService, "claimsCacheEnabled", claimsCacheEnabled);
+        ReflectionTestUtils.setField(jwtService, "claimsCacheMaxMemory", DataSize.ofMegabytes(1));
+        jwtService.init();
+        return jwtService;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.RateLimitProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldRejectWith429_whenIpLimitExceeded() throws Exception {
+        RateLimitFilter filter = filter(rule("login-ip", RateLimitProperties.KeyType.IP, 2));
+
+        assertThat(perform(filter, "10.0.0.1", "a@mail.com").getStatus()).isEqualTo(200);
+        assertThat(perform(filter, "10.0.0.1", "b@mail.com").getStatus()).isEqualTo(200);
+        MockHttpServletResponse rejected = perform(filter, "10.0.0.1", "c@mail.com");
+
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isNotNull();
+        assertThat(perform(filter, "10.0.0.2", "a@mail.com").getStatus()).isEqualTo(200);
+        assertThat(meterRegistry.get("app.ratelimit.rejected").tag("rule", "login-ip").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldLimitByEmail_andKeepBodyReadable() throws Exception {
+        RateLimitFilter filter = filter(rule("login-email", RateLimitProperties.KeyType.EMAIL, 1));
+
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(loginRequest("10.0.0.1", "User@Mail.com"), first, chain);
+
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(new String(chain.getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8))
+                .contains("User@Mail.com");
+        assertThat(perform(filter, "10.0.0.2", "user@mail.com").getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void shouldRejectEmailRule_whenBodyLengthIsUnknownOrTooLarge() throws Exception {
+        RateLimitFilter filter = filter(rule("login-email", RateLimitProperties.KeyType.EMAIL, 1));
+
+        // Без Content-Length (chunked) email нельзя прочитать заранее, поэтому ограничение не обходится
+        MockHttpServletRequest chunked = new MockHttpServletRequest("POST", "/api/auth/login") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.setContent("{\"email\":\"user@mail.com\"}".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse lengthRequired = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(chunked, lengthRequired, chain);
+
+        MockHttpServletRequest oversized = loginRequest("10.0.0.1", "user@mail.com" + " ".repeat(20_000));
+        MockHttpServletResponse tooLarge = new MockHttpServletResponse();
+        filter.doFilter(oversized, tooLarge, new MockFilterChain());
+
+        assertThat(lengthRequired.getStatus()).isEqualTo(411);
+        assertThat(chain.getRequest()).isNull();
+        assertThat(tooLarge.getStatus()).isEqualTo(413);
+        assertThat(perform(filter, "10.0.0.1", "user@mail.com").getStatus()).isEqualTo(200);
+    }
+
+    private MockHttpServletResponse perform(RateLimitFilter filter, String ip, String email) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(loginRequest(ip, email), response, new MockFilterChain());
+        return response;
+    }
+
+    private MockHttpServletRequest loginRequest(String ip, String email) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+        request.setRemoteAddr(ip);
+        request.setContentType("application/json");
+        request.setContent(("{\"email\":\"" + email + "\",\"password\":\"secret\"}").getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private RateLimitFilter filter(RateLimitProperties.Rule rule) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRules(List.of(rule));
+        return new RateLimitFilter(properties, new ObjectMapper(), meterRegistry);
+    }
+
+    private RateLimitProperties.Rule rule(String name, RateLimitProperties.KeyType key, long capacity) {
+        RateLimitProperties.Rule rule = new RateLimitProperties.Rule();
+        rule.setName(name);
+        rule.setPattern("/api/auth/login");
+        rule.setKey(key);
+        rule.setCapacity(capacity);
+        rule.setRefillPeriod(Duration.ofHours(1));
+        return rule;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.RateLimitProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет на настоящем Tomcat с настройками из application.yml, что за балансировщиком
+ * ограничение по IP считается для каждого клиента из X-Forwarded-For, а не для адреса балансировщика.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        classes = RateLimitForwardedHeadersTest.WebConfiguration.class,
+        properties = {
+                "app.rate-limit.rules[0].name=ping-ip",
+                "app.rate-limit.rules[0].pattern=/ping",
+                "app.rate-limit.rules[0].key=IP",
+                "app.rate-limit.rules[0].capacity=2",
+                "app.rate-limit.rules[0].refill-period=1h"
+        })
+class RateLimitForwardedHeadersTest {
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void shouldKeepSeparateBuckets_forClientsBehindTrustedProxy() throws Exception {
+        assertThat(ping("203.0.113.10")).isEqualTo(200);
+        assertThat(ping("203.0.113.10")).isEqualTo(200);
+        assertThat(ping("203.0.113.10")).isEqualTo(429);
+
+        // Запросы приходят с адреса балансировщика (127.0.0.1), но у другого клиента своё ведро
+        assertThat(ping("203.0.113.20")).isEqualTo(200);
+    }
+
+    private int ping(String clientIp) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/ping"))
+                .header("X-Forwarded-For", clientIp)
+                .GET()
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({
+            ServletWebServerFactoryAutoConfiguration.class,
+            EmbeddedWebServerFactoryCustomizerAutoConfiguration.class
+    })
+    @EnableConfigurationProperties(RateLimitProperties.class)
+    static class WebConfiguration {
+
+        @Bean
+        FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimitProperties properties) {
+            return new FilterRegistrationBean<>(
+                    new RateLimitFilter(properties, new ObjectMapper(), new SimpleMeterRegistry()));
+        }
+
+        @Bean
+        ServletRegistrationBean<HttpServlet> pingServlet() {
+            return new ServletRegistrationBean<>(new HttpServlet() {
+                @Override
+                protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+                    response.setStatus(HttpServletResponse.SC_OK);
+                }
+            }, "/ping");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.UserRole;
+import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.CacheInvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserDetailsServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TokenVersionCache tokenVersionCache;
+
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private UserDetailsServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new UserDetailsServiceImpl(userRepository, tokenVersionCache, cacheInvalidationBus,
+                new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void loadUserByUsername_shouldQueryDatabaseOnce_whenCalledTwice() {
+        User user = user(UUID.randomUUID(), "user@mail.com");
+        when(userRepository.findByEmail("user@mail.com")).thenReturn(Optional.of(user));
+
+        service.loadUserByUsername("user@mail.com");
+        AppUserDetails details = (AppUserDetails) service.loadUserByUsername("user@mail.com");
+
+        assertThat(details.getId()).isEqualTo(user.getId());
+        verify(userRepository, times(1)).findByEmail("user@mail.com");
+    }
+
+    @Test
+    void evictUser_shouldReloadFromDatabase() {
+        User user = user(UUID.randomUUID(), "user@mail.com");
+        when(userRepository.findByEmail("user@mail.com")).thenReturn(Optional.of(user));
+
+        service.loadUserByUsername("user@mail.com");
+        service.evictUser(user.getId());
+        service.loadUserByUsername("user@mail.com");
+
+        verify(userRepository, times(2)).findByEmail("user@mail.com");
+        verify(tokenVersionCache).evict(user.getId());
+    }
+
+    @Test
+    void evictUser_shouldDropUserLoadedConcurrently() {
+        User user = user(UUID.randomUUID(), "user@mail.com");
+        // Роль меняется и сбрасывается, пока загрузка уже прочитала старые данные
+        when(userRepository.findByEmail("user@mail.com")).thenAnswer(invocation -> {
+            service.evictUser(user.getId());
+            return Optional.of(user);
+        }).thenReturn(Optional.of(user));
+
+        service.loadUserByUsername("user@mail.com");
+        service.loadUserByUsername("user@mail.com");
+        service.loadUserByUsername("user@mail.com");
+
+        verify(userRepository, times(2)).findByEmail("user@mail.com");
+    }
+
+    @Test
+    void loadUserByUsername_shouldNotCacheMissingUser() {
+        when(userRepository.findByEmail("missing@mail.com")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.loadUserByUsername("missing@mail.com"))
+                .isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> service.loadUserByUsername("missing@mail.com"))
+                .isInstanceOf(UserNotFoundException.class);
+
+        verify(userRepository, times(2)).findByEmail("missing@mail.com");
+    }
+
+    @Test
+    void busNotification_shouldEvictUserChangedOnAnotherNode() {
+        ArgumentCaptor<CacheInvalidationBus.Subscriber> subscriber =
+                ArgumentCaptor.forClass(CacheInvalidationBus.Subscriber.class);
+        verify(cacheInvalidationBus).subscribe(eq(CacheInvalidationBus.Topic.USER), subscriber.capture());
+        User user = user(UUID.randomUUID(), "user@mail.com");
+        when(userRepository.findByEmail("user@mail.com")).thenReturn(Optional.of(user));
+
+        service.loadUserByUsername("user@mail.com");
+        subscriber.getValue().evict(List.of(user.getId()));
+        service.loadUserByUsername("user@mail.com");
+        subscriber.getValue().evictAll();
+        service.loadUserByUsername("user@mail.com");
+
+        verify(userRepository, times(3)).findByEmail("user@mail.com");
+        verify(tokenVersionCache).evict(user.getId());
+        verify(tokenVersionCache).evictAll();
+    }
+
+    private User user(UUID id, String email) {
+        return User.builder()
+                .id(id)
+                .email(email)
+                .password("encoded")
+                .role(UserRole.ROLE_USER)
+                .build();
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.bankcards.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CacheInvalidationBusTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final RecordingSubscriber subscriber = new RecordingSubscriber();
+
+    private CacheInvalidationBus bus;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        bus = bus(jdbcTemplate, transactionManager, new DataSourceProperties(), true);
+        bus.subscribe(CacheInvalidationBus.Topic.CARD, subscriber);
+    }
+
+    @Test
+    void publish_shouldSplitKeysIntoPayloadsWithinNotifyLimit() {
+        List<UUID> ids = IntStream.range(0, 500).mapToObj(i -> UUID.randomUUID()).toList();
+
+        bus.publish(CacheInvalidationBus.Topic.CARD, ids);
+        bus.flush();
+
+        ArgumentCaptor<Object> payloads = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate, atLeast(2)).query(eq("SELECT pg_notify(?, ?)"), any(RowCallbackHandler.class),
+                eq("bankcards_cache"), payloads.capture());
+        assertThat(payloads.getAllValues()).allSatisfy(payload -> assertThat((String) payload).hasSizeLessThan(8000));
+        assertThat(payloads.getAllValues().stream().mapToInt(payload -> ((String) payload).split(",").length).sum())
+                .isEqualTo(ids.size());
+        // Все части уходят одной транзакцией
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void publish_shouldNotNotifyInsideCallerTransaction() {
+        UUID id = UUID.randomUUID();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bus.publish(CacheInvalidationBus.Topic.CARD, id);
+            bus.flush();
+            verifyNoInteractions(jdbcTemplate);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCommit());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        bus.flush();
+
+        verify(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), contains(id.toString()));
+    }
+
+    @Test
+    void flush_shouldSendRepeatedKeysOnce() {
+        UUID id = UUID.randomUUID();
+
+        bus.publish(CacheInvalidationBus.Topic.CARD, id);
+        bus.publish(CacheInvalidationBus.Topic.CARD, id);
+        bus.flush();
+        bus.flush();
+
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), payload.capture());
+        assertThat((String) payload.getValue()).endsWith(";CARD;" + id);
+    }
+
+    @Test
+    void flush_shouldKeepKeysForNextAttempt_whenNotifyFails() {
+        UUID id = UUID.randomUUID();
+        doThrow(new QueryTimeoutException("timeout")).doNothing()
+                .when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+
+        bus.publish(CacheInvalidationBus.Topic.CARD, id);
+        bus.flush();
+        bus.flush();
+
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), any(),
+                contains(id.toString()));
+    }
+
+    @Test
+    void publish_shouldDoNothing_whenDisabled() {
+        CacheInvalidationBus disabled = bus(jdbcTemplate, transactionManager, new DataSourceProperties(), false);
+        disabled.publish(CacheInvalidationBus.Topic.CARD, UUID.randomUUID());
+        disabled.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void handle_shouldEvictKeysPublishedByAnotherNode() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        bus.handle(UUID.randomUUID() + ";CARD;" + first + "," + second);
+        bus.handle(UUID.randomUUID() + ";USER;" + first);
+
+        assertThat(subscriber.evicted).containsExactly(first, second);
+    }
+
+    @Test
+    void handle_shouldSkipOwnNotifications() {
+        bus.publish(CacheInvalidationBus.Topic.CARD, UUID.randomUUID());
+        bus.flush();
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), payload.capture());
+
+        bus.handle((String) payload.getValue());
+
+        assertThat(subscriber.evicted).isEmpty();
+    }
+
+    @Test
+    void handle_shouldIgnoreMalformedPayload() {
+        bus.handle("garbage");
+        bus.handle(UUID.randomUUID() + ";ACCOUNT;" + UUID.randomUUID());
+        bus.handle(UUID.randomUUID() + ";CARD;not-a-uuid");
+
+        assertThat(subscriber.evicted).isEmpty();
+    }
+
+    @Test
+    void flushAll_shouldEvictEverything() {
+        bus.flushAll();
+
+        assertThat(subscriber.flushes).isEqualTo(1);
+    }
+
+    /**
+     * Два узла на локальной PostgreSQL: до другого узла доходят только ключи закоммиченных транзакций.
+     * Запуск: BANKCARDS_IT_DB=true mvn test -Dtest=CacheInvalidationBusTest
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "BANKCARDS_IT_DB", matches = "true")
+    void notification_shouldReachAnotherNodeOnlyAfterCommit() throws Exception {
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl("jdbc:postgresql://localhost:5432/bank_cards_db");
+        properties.setUsername(System.getenv().getOrDefault("POSTGRES_USER", "postgres"));
+        properties.setPassword(System.getenv().getOrDefault("POSTGRES_PASSWORD", "postgres"));
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                properties.getUrl(), properties.getUsername(), properties.getPassword());
+        JdbcTemplate database = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactions = new DataSourceTransactionManager(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactions);
+
+        CacheInvalidationBus sender = bus(database, transactions, properties, true);
+        CacheInvalidationBus receiver = bus(database, transactions, properties, true);
+        RecordingSubscriber remote = new RecordingSubscriber();
+        receiver.subscribe(CacheInvalidationBus.Topic.CARD, remote);
+        receiver.start();
+        try {
+            // После подключения слушатель очищает кэши: это признак того, что LISTEN уже выполнен
+            assertThat(remote.flushed.poll(5, TimeUnit.SECONDS)).isNotNull();
+
+            UUID rolledBack = UUID.randomUUID();
+            transactionTemplate.executeWithoutResult(status -> {
+                sender.publish(CacheInvalidationBus.Topic.CARD, rolledBack);
+                status.setRollbackOnly();
+            });
+            UUID committed = UUID.randomUUID();
+            transactionTemplate.executeWithoutResult(status ->
+                    sender.publish(CacheInvalidationBus.Topic.CARD, committed));
+            sender.flush();
+
+            assertThat(remote.received.poll(5, TimeUnit.SECONDS)).isEqualTo(committed);
+            assertThat(remote.evicted).doesNotContain(rolledBack);
+        } finally {
+            receiver.stop();
+        }
+    }
+
+    private CacheInvalidationBus bus(JdbcTemplate template, PlatformTransactionManager transactions,
+                                     DataSourceProperties properties, boolean enabled) {
+        return new CacheInvalidationBus(template, transactions, properties, new SimpleMeterRegistry(), enabled,
+                "bankcards_cache", Duration.ofMillis(200), Duration.ofMillis(100), Duration.ofMillis(50));
+    }
+
+    private static class RecordingSubscriber implements CacheInvalidationBus.Subscriber {
+
+        private final List<UUID> evicted = new ArrayList<>();
+        private final BlockingQueue<UUID> received = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Boolean> flushed = new LinkedBlockingQueue<>();
+        private int flushes;
+
+        @Override
+        public synchronized void evict(Collection<UUID> ids) {
+            evicted.addAll(ids);
+            received.addAll(ids);
+        }
+
+        @Override
+        public synchronized void evictAll() {
+            flushes++;
+            flushed.add(true);
+        }
+    }
+}
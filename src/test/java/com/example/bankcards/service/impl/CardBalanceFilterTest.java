@@ -0,0 +1,82 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardFilter;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardSpecification;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Фильтр по балансу сравнивает баланс вместе с несвёрнутыми полосами — тот же, что клиент видит в ответе.
+ * Запуск: BANKCARDS_IT_DB=true mvn test -Dtest=CardBalanceFilterTest
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_IT_DB", matches = "true")
+class CardBalanceFilterTest {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CardBalanceStripes cardBalanceStripes;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CardTestFixture fixture;
+    private UUID cardId;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new CardTestFixture(userRepository, cardRepository, jdbcTemplate, "Filter");
+        cardId = fixture.createCard(Money.of(100));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            cardBalanceStripes.resize(cardId, 4);
+            cardBalanceStripes.credit(cardId, fixture.userId(), new BigDecimal("50.00"), 0);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.delete();
+    }
+
+    @Test
+    void balanceRange_shouldIncludeStripedCredits() {
+        assertThat(find(Money.of(120), null)).containsExactly(cardId);
+        assertThat(find(Money.of(150), Money.of(150))).containsExactly(cardId);
+        assertThat(find(null, Money.of(120))).isEmpty();
+    }
+
+    private List<UUID> find(Money from, Money to) {
+        CardFilter filter = new CardFilter();
+        filter.setUserId(fixture.userId());
+        filter.setBalanceFrom(from);
+        filter.setBalanceTo(to);
+        return cardRepository.findAll(CardSpecification.withFilter(filter)).stream()
+                .map(Card::getId)
+                .toList();
+    }
+}
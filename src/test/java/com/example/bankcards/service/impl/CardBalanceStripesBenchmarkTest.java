@@ -0,0 +1,141 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardLedgerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Пропускная способность зачислений на одну «горячую» карту в зависимости от числа полос баланса.
+ * Каждый поток переводит со своей карты, поэтому вся конкуренция приходится на карту получателя.
+ * Запуск: BANKCARDS_IT_DB=true mvn test -Dtest=CardBalanceStripesBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_IT_DB", matches = "true")
+class CardBalanceStripesBenchmarkTest {
+
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 300;
+    private static final int[] STRIPE_COUNTS = {0, 4, 16};
+    private static final Money INITIAL_BALANCE = Money.of(1_000_000);
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CardLedgerService cardLedgerService;
+
+    @Autowired
+    private CardBalanceStripes cardBalanceStripes;
+
+    @Autowired
+    private CardResponseCache cardResponseCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CardTestFixture fixture;
+    private UUID hotCardId;
+    private List<UUID> payerCardIds;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new CardTestFixture(userRepository, cardRepository, jdbcTemplate, "Stripes");
+        hotCardId = fixture.createCard(INITIAL_BALANCE);
+        payerCardIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            payerCardIds.add(fixture.createCard(INITIAL_BALANCE));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.delete();
+    }
+
+    @Test
+    void creditThroughputShouldScaleWithStripeCount() throws Exception {
+        CardTransferExecutor executor = new CardTransferExecutor(cardRepository, cardLedgerService,
+                cardBalanceStripes, cardResponseCache, transactionManager, new SimpleMeterRegistry(),
+                CardTransferExecutor.Mode.ATOMIC, Duration.ofSeconds(3), 1, Duration.ZERO, Duration.ZERO);
+
+        Map<Integer, Double> throughput = new LinkedHashMap<>();
+        for (int stripeCount : STRIPE_COUNTS) {
+            new TransactionTemplate(transactionManager)
+                    .executeWithoutResult(status -> cardBalanceStripes.resize(hotCardId, stripeCount));
+            throughput.put(stripeCount, measure(executor));
+        }
+        throughput.forEach((stripeCount, opsPerSecond) ->
+                log.info("Credits to hot card, stripes={}: {} ops/s", stripeCount, "%.0f".formatted(opsPerSecond)));
+
+        cardBalanceStripes.compact();
+        List<UUID> cardIds = new ArrayList<>(payerCardIds);
+        cardIds.add(hotCardId);
+        assertThat(fixture.totalBalance(cardIds)).isEqualTo(Money.ofMinor(INITIAL_BALANCE.getMinorUnits() * (THREADS + 1)));
+        assertThat(throughput.get(16)).isGreaterThan(throughput.get(0));
+    }
+
+    private double measure(CardTransferExecutor executor) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (UUID payerCardId : payerCardIds) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        executor.transfer(transfer(payerCardId), fixture.userId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            return THREADS * TRANSFERS_PER_THREAD / seconds;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private TransferRequest transfer(UUID fromCardId) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCardId);
+        request.setToCardId(hotCardId);
+        request.setAmount(Money.of(1));
+        return request;
+    }
+
+}
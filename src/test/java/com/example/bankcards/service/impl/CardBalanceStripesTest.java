@@ -0,0 +1,92 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.exception.InvalidStripeCountException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardBalanceStripesTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private TransactionStatus transactionStatus;
+
+    private final UUID cardId = UUID.randomUUID();
+    private CardBalanceStripes stripes;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        stripes = new CardBalanceStripes(jdbcTemplate, transactionManager);
+    }
+
+    @Test
+    void credit_shouldPassNonNegativeStripeHash() {
+        UUID userId = UUID.randomUUID();
+        BigDecimal amount = BigDecimal.TEN;
+        when(jdbcTemplate.update(anyString(), eq(amount), eq(cardId), eq(userId), eq(Integer.MAX_VALUE)))
+                .thenReturn(1);
+
+        assertThat(stripes.credit(cardId, userId, amount, -1)).isTrue();
+    }
+
+    @Test
+    void fold_shouldReturnZero_whenCardMissing() {
+        when(jdbcTemplate.queryForList(anyString(), eq(BigDecimal.class), any(), any(), any())).thenReturn(List.of());
+
+        assertThat(stripes.fold(cardId)).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void resize_shouldRejectTooManyStripes() {
+        assertThatThrownBy(() -> stripes.resize(cardId, CardBalanceStripes.MAX_STRIPES + 1))
+                .isInstanceOf(InvalidStripeCountException.class);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void resize_shouldLockAndFoldBeforeDroppingStripes() {
+        when(jdbcTemplate.update(startsWith("UPDATE cards SET stripe_count"), eq(2), eq(cardId))).thenReturn(1);
+
+        assertThat(stripes.resize(cardId, 2)).isTrue();
+
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).queryForList(contains("FOR UPDATE"), eq(Integer.class), eq(cardId));
+        inOrder.verify(jdbcTemplate).queryForList(contains("WITH folded"), eq(BigDecimal.class), any(), any(), any());
+        inOrder.verify(jdbcTemplate).update(startsWith("UPDATE cards SET stripe_count"), eq(2), eq(cardId));
+        inOrder.verify(jdbcTemplate).update(startsWith("DELETE FROM card_balance_stripes"), eq(cardId), eq(2));
+    }
+
+    @Test
+    void resize_shouldReturnFalse_whenCardNotFound() {
+        assertThat(stripes.resize(cardId, 4)).isFalse();
+        verify(jdbcTemplate, never()).update(startsWith("DELETE"), any(Object[].class));
+    }
+
+    @Test
+    void compact_shouldFoldEachCardInOwnTransaction() {
+        UUID otherId = UUID.randomUUID();
+        when(jdbcTemplate.queryForList(anyString(), eq(UUID.class))).thenReturn(List.of(cardId, otherId));
+        when(jdbcTemplate.queryForList(anyString(), eq(BigDecimal.class), any(), any(), any()))
+                .thenReturn(List.of(BigDecimal.ONE));
+
+        stripes.compact();
+
+        verify(transactionManager, times(2)).commit(transactionStatus);
+        verify(jdbcTemplate).queryForList(anyString(), eq(BigDecimal.class), eq(cardId), eq(cardId), eq(cardId));
+        verify(jdbcTemplate).queryForList(anyString(), eq(BigDecimal.class), eq(otherId), eq(otherId), eq(otherId));
+    }
+}
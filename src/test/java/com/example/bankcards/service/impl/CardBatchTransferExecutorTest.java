@@ -0,0 +1,194 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResult;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.OperationOutcomeUnknownException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.CardLedgerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardBatchTransferExecutorTest {
+
+    @Mock private CardRepository cardRepository;
+    @Mock private CardLedgerService cardLedgerService;
+    @Mock private CardResponseCache cardResponseCache;
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private TransactionStatus transactionStatus;
+
+    private final UUID userId = UUID.randomUUID();
+    private Card first;
+    private Card second;
+    private Card third;
+
+    private CardBatchTransferExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        User user = User.builder().id(userId).build();
+        first = card(user, 100);
+        second = card(user, 50);
+        third = card(user, 0);
+        when(cardRepository.findAllByIdInAndUserIdForUpdate(anyCollection(), eq(userId)))
+                .thenReturn(List.of(first, second, third));
+        executor = new CardBatchTransferExecutor(cardRepository, cardLedgerService, cardResponseCache, jdbcTemplate,
+                transactionManager, Duration.ofSeconds(3));
+    }
+
+    @Test
+    void transfer_shouldLockOnceAndWriteNetDeltas() {
+        BatchTransferResponse response = executor.transfer(batch(true,
+                transfer(first, second, 80),
+                transfer(second, third, 120),
+                transfer(third, first, 20)), userId);
+
+        assertThat(response.isCommitted()).isTrue();
+        assertThat(response.getSucceeded()).isEqualTo(3);
+        verify(cardRepository, times(1)).findAllByIdInAndUserIdForUpdate(anyCollection(), eq(userId));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), updates.capture());
+        assertThat(updates.getValue())
+                .extracting(row -> row[1], row -> ((BigDecimal) row[0]).intValueExact())
+                .containsExactlyInAnyOrder(
+                        tuple(first.getId(), -60),
+                        tuple(second.getId(), -40),
+                        tuple(third.getId(), 100));
+        verify(cardLedgerService).recordTransfer(first.getId(), second.getId(), Money.of(80).toBigDecimal());
+        verify(cardLedgerService, times(3)).recordTransfer(any(), any(), any());
+        verify(cardResponseCache).evictAfterCommit(Set.of(first.getId(), second.getId(), third.getId()));
+        verify(transactionStatus, never()).setRollbackOnly();
+    }
+
+    @Test
+    void transfer_shouldApplyNothing_whenAllOrNothingAndOneFails() {
+        BatchTransferResponse response = executor.transfer(batch(true,
+                transfer(first, second, 80),
+                transfer(first, second, 80)), userId);
+
+        assertThat(response.isCommitted()).isFalse();
+        assertThat(response.getResults())
+                .extracting(TransferResult::getStatus)
+                .containsExactly(TransferResult.Status.NOT_APPLIED, TransferResult.Status.FAILED);
+        assertThat(response.getResults().get(1).getError()).isEqualTo("Insufficient funds on the card");
+        verifyNoInteractions(jdbcTemplate, cardLedgerService, cardResponseCache);
+        verify(transactionStatus).setRollbackOnly();
+    }
+
+    @Test
+    void transfer_shouldApplySuccessfulItems_whenPartialAllowed() {
+        second.setStatus(CardStatus.BLOCKED);
+        UUID unknown = UUID.randomUUID();
+        TransferRequest toUnknown = transfer(first, second, 10);
+        toUnknown.setToCardId(unknown);
+
+        BatchTransferResponse response = executor.transfer(batch(false,
+                transfer(first, third, 30),
+                transfer(first, second, 10),
+                toUnknown,
+                transfer(first, third, -5)), userId);
+
+        assertThat(response.isCommitted()).isTrue();
+        assertThat(response.getSucceeded()).isEqualTo(1);
+        assertThat(response.getFailed()).isEqualTo(3);
+        assertThat(response.getResults().get(2).getError()).contains(unknown.toString());
+        verify(cardLedgerService, times(1)).recordTransfer(first.getId(), third.getId(), Money.of(30).toBigDecimal());
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void transfer_shouldPassResponseToOnApplied_beforeCommit() {
+        @SuppressWarnings("unchecked")
+        Consumer<BatchTransferResponse> onApplied = mock(Consumer.class);
+
+        BatchTransferResponse response = executor.transfer(batch(true, transfer(first, second, 80)), userId, onApplied);
+
+        InOrder inOrder = inOrder(onApplied, transactionManager);
+        inOrder.verify(onApplied).accept(response);
+        inOrder.verify(transactionManager).commit(transactionStatus);
+    }
+
+    @Test
+    void transfer_shouldNotCallOnApplied_whenBatchRejected() {
+        @SuppressWarnings("unchecked")
+        Consumer<BatchTransferResponse> onApplied = mock(Consumer.class);
+
+        executor.transfer(batch(true, transfer(first, second, 80), transfer(first, second, 80)), userId, onApplied);
+
+        verifyNoInteractions(onApplied);
+    }
+
+    @Test
+    void transfer_shouldReportUnknownOutcome_whenCommitFails() {
+        doThrow(new TransactionSystemException("connection reset")).when(transactionManager).commit(any());
+
+        assertThatThrownBy(() -> executor.transfer(batch(true, transfer(first, second, 80)), userId))
+                .isInstanceOf(OperationOutcomeUnknownException.class);
+    }
+
+    @Test
+    void applyIndependently_shouldApplySuccessfulItemsInCallerTransaction() {
+        List<RuntimeException> failures = executor.applyIndependently(List.of(
+                transfer(first, second, 80),
+                transfer(first, second, 80)), userId);
+
+        assertThat(failures.get(0)).isNull();
+        assertThat(failures.get(1)).isInstanceOf(InsufficientFundsException.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        verify(cardLedgerService, times(1)).recordTransfer(first.getId(), second.getId(), Money.of(80).toBigDecimal());
+        verify(transactionManager, never()).getTransaction(any());
+    }
+
+    private BatchTransferRequest batch(boolean allOrNothing, TransferRequest... transfers) {
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setTransfers(List.of(transfers));
+        request.setAllOrNothing(allOrNothing);
+        return request;
+    }
+
+    private TransferRequest transfer(Card from, Card to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(from.getId());
+        request.setToCardId(to.getId());
+        request.setAmount(Money.of(amount));
+        return request;
+    }
+
+    private Card card(User user, long balance) {
+        return Card.builder()
+                .id(UUID.randomUUID())
+                .user(user)
+                .balance(Money.of(balance))
+                .status(CardStatus.ACTIVE)
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.BulkCardResponse;
+import com.example.bankcards.dto.CardRequest;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardLedgerService;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Выпуск карт по одной в своей транзакции (как POST /api/cards) против выпуска частями с пакетными вставками.
+ * Запуск: BANKCARDS_IT_DB=true JPA_SHOW_SQL=false mvn test -Dtest=CardBulkIssuerBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_IT_DB", matches = "true")
+class CardBulkIssuerBenchmarkTest {
+
+    private static final int SINGLE_CARDS = 2_000;
+    private static final int BULK_CARDS = 50_000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardLedgerService cardLedgerService;
+
+    @Autowired
+    private CardNumberAllocator cardNumberAllocator;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CardTestFixture fixture;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new CardTestFixture(userRepository, cardRepository, jdbcTemplate, "Benchmark");
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.delete();
+    }
+
+    @Test
+    void compareSingleWithChunkedIssue() {
+        double single = measure(issuer(1), SINGLE_CARDS);
+        double chunked = measure(issuer(1_000), BULK_CARDS);
+
+        log.info("Card issue, cards/s: one per transaction={}, chunks of 1000 with batch inserts={}",
+                "%.0f".formatted(single), "%.0f".formatted(chunked));
+
+        assertThat(cardRepository.count()).isGreaterThanOrEqualTo(SINGLE_CARDS + BULK_CARDS);
+        assertThat(chunked).isGreaterThan(single);
+    }
+
+    private double measure(CardBulkIssuer issuer, int cards) {
+        List<CardRequest> requests = Collections.nCopies(cards, new CardRequest(fixture.userId(), BigDecimal.TEN));
+        long start = System.nanoTime();
+        BulkCardResponse response = issuer.issue(requests);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        assertThat(response.getCreated()).isEqualTo(cards);
+        return cards / seconds;
+    }
+
+    private CardBulkIssuer issuer(int chunkSize) {
+        return new CardBulkIssuer(userRepository, cardRepository, cardLedgerService, cardNumberAllocator,
+                entityManager, transactionManager, chunkSize);
+    }
+}
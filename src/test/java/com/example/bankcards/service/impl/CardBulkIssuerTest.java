@@ -0,0 +1,182 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.BulkCardResponse;
+import com.example.bankcards.dto.CardChunkResult;
+import com.example.bankcards.dto.CardRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InvalidCardBalanceException;
+import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardLedgerService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CardBulkIssuerTest {
+
+    @Mock private UserRepository userRepository;
+    @Mock private CardRepository cardRepository;
+    @Mock private CardLedgerService cardLedgerService;
+    @Mock private CardNumberAllocator cardNumberAllocator;
+    @Mock private EntityManager entityManager;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private TransactionStatus transactionStatus;
+
+    private final User firstUser = User.builder().id(UUID.randomUUID()).build();
+    private final User secondUser = User.builder().id(UUID.randomUUID()).build();
+    private final AtomicInteger numbers = new AtomicInteger();
+
+    private CardBulkIssuer issuer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(userRepository.findAllById(any())).thenReturn(List.of(firstUser, secondUser));
+        when(cardNumberAllocator.next()).thenAnswer(i -> String.format("2200 0000 0000 %04d", numbers.getAndIncrement()));
+        when(cardRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Card> cards = invocation.getArgument(0);
+            cards.forEach(card -> card.setId(UUID.randomUUID()));
+            return cards;
+        });
+        issuer = new CardBulkIssuer(userRepository, cardRepository, cardLedgerService, cardNumberAllocator,
+                entityManager, transactionManager, 2);
+    }
+
+    @Test
+    void issue_shouldLoadUsersOnceAndCommitEachChunk() {
+        List<CardRequest> requests = IntStream.range(0, 5)
+                .mapToObj(i -> new CardRequest(i % 2 == 0 ? firstUser.getId() : secondUser.getId(), BigDecimal.valueOf(i)))
+                .toList();
+
+        BulkCardResponse response = issuer.issue(requests);
+
+        assertThat(response.getCreated()).isEqualTo(5);
+        assertThat(response.getFailed()).isZero();
+        assertThat(response.getChunks())
+                .extracting(CardChunkResult::getOffset, CardChunkResult::getSize, CardChunkResult::isCommitted)
+                .containsExactly(tuple(0, 2, true), tuple(2, 2, true), tuple(4, 1, true));
+        assertThat(response.getChunks()).flatExtracting(CardChunkResult::getCardIds).doesNotHaveDuplicates().hasSize(5);
+        verify(userRepository).findAllById(List.of(firstUser.getId(), secondUser.getId()));
+        verify(transactionManager, times(3)).commit(transactionStatus);
+        verify(entityManager, times(3)).clear();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Card>> saved = ArgumentCaptor.forClass(List.class);
+        verify(cardRepository, times(3)).saveAll(saved.capture());
+        assertThat(saved.getAllValues().get(1))
+                .extracting(card -> card.getUser().getId(), card -> card.getBalance().toBigDecimal())
+                .containsExactly(tuple(firstUser.getId(), new BigDecimal("2.00")), tuple(secondUser.getId(), new BigDecimal("3.00")));
+    }
+
+    @Test
+    void issue_shouldRecordOpeningsBeforeFlushing() {
+        issuer.issue(List.of(new CardRequest(firstUser.getId(), new BigDecimal("10.00"))));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<UUID, BigDecimal>> openings = ArgumentCaptor.forClass(Map.class);
+        InOrder inOrder = inOrder(cardRepository, cardLedgerService, entityManager);
+        inOrder.verify(cardRepository).saveAll(anyList());
+        inOrder.verify(cardLedgerService).recordOpenings(openings.capture());
+        inOrder.verify(entityManager).flush();
+        assertThat(openings.getValue()).containsValue(new BigDecimal("10.00"));
+    }
+
+    @Test
+    void issue_shouldRejectWholeRequest_whenUserIsMissing() {
+        UUID unknownId = UUID.randomUUID();
+        List<CardRequest> requests = List.of(
+                new CardRequest(firstUser.getId(), BigDecimal.ONE),
+                new CardRequest(unknownId, BigDecimal.ONE));
+
+        assertThatThrownBy(() -> issuer.issue(requests))
+                .isInstanceOf(UserNotFoundException.class)
+                .hasMessageContaining(unknownId.toString());
+        verifyNoInteractions(cardRepository, cardNumberAllocator, transactionManager);
+    }
+
+    @Test
+    void issue_shouldLoadUsersInBatches_whenRequestHasManyUsers() {
+        when(userRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<UUID> ids = invocation.getArgument(0);
+            List<User> users = new ArrayList<>();
+            ids.forEach(id -> users.add(User.builder().id(id).build()));
+            return users;
+        });
+        List<CardRequest> requests = IntStream.range(0, CardBulkIssuer.USER_LOOKUP_BATCH_SIZE + 1)
+                .mapToObj(i -> new CardRequest(UUID.randomUUID(), BigDecimal.ONE))
+                .toList();
+
+        BulkCardResponse response = issuer.issue(requests);
+
+        assertThat(response.getCreated()).isEqualTo(requests.size());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<UUID>> lookups = ArgumentCaptor.forClass(Iterable.class);
+        verify(userRepository, times(2)).findAllById(lookups.capture());
+        assertThat(lookups.getAllValues())
+                .extracting(ids -> ((List<?>) ids).size())
+                .containsExactly(CardBulkIssuer.USER_LOOKUP_BATCH_SIZE, 1);
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {"-0.01", "10.001", "1000000000000000000"})
+    void issue_shouldRejectWholeRequest_whenBalanceIsInvalid(String balance) {
+        List<CardRequest> requests = List.of(
+                new CardRequest(firstUser.getId(), BigDecimal.ONE),
+                new CardRequest(secondUser.getId(), balance == null ? null : new BigDecimal(balance)));
+
+        assertThatThrownBy(() -> issuer.issue(requests))
+                .isInstanceOf(InvalidCardBalanceException.class)
+                .hasMessageStartingWith("Card at position 1 has invalid balance " + balance);
+        verifyNoInteractions(userRepository, cardRepository, cardNumberAllocator, transactionManager);
+    }
+
+    @Test
+    void issue_shouldStopAfterFailedChunk() {
+        when(cardRepository.saveAll(anyList()))
+                .thenAnswer(invocation -> invocation.getArgument(0))
+                .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint"));
+        List<CardRequest> requests = IntStream.range(0, 6)
+                .mapToObj(i -> new CardRequest(firstUser.getId(), BigDecimal.ONE))
+                .toList();
+
+        BulkCardResponse response = issuer.issue(requests);
+
+        assertThat(response.getCreated()).isEqualTo(2);
+        assertThat(response.getFailed()).isEqualTo(4);
+        assertThat(response.getChunks())
+                .extracting(CardChunkResult::getOffset, CardChunkResult::isCommitted, CardChunkResult::getError)
+                .containsExactly(
+                        tuple(0, true, null),
+                        tuple(2, false, "duplicate key value violates unique constraint"),
+                        tuple(4, false, CardBulkIssuer.NOT_ATTEMPTED));
+        verify(transactionManager).commit(transactionStatus);
+        verify(transactionManager).rollback(transactionStatus);
+        verify(cardRepository, times(2)).saveAll(anyList());
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardExportFormat;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.exception.CardExportLimitExceededException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardView;
+import com.example.bankcards.service.CardExport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardExporterTest {
+
+    @Mock private CardRepository cardRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private TransactionStatus transactionStatus;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final Specification<Card> spec = (root, query, cb) -> null;
+    private final UUID firstId = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private final UUID secondId = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private CardExporter exporter;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(cardRepository.streamViews(spec, 50)).thenReturn(Stream.of(
+                new CardView(firstId, "1234 5678 9012 3456", LocalDate.of(2027, 1, 31),
+                        CardStatus.ACTIVE, Money.of(10), BigDecimal.valueOf(2.5)),
+                new CardView(secondId, "1111 2222 3333 4444", LocalDate.of(2028, 6, 30),
+                        CardStatus.BLOCKED, Money.ZERO, BigDecimal.ZERO)
+        ).onClose(() -> closed.set(true)));
+        exporter = new CardExporter(cardRepository, objectMapper, transactionManager, 50, 1);
+    }
+
+    @Test
+    void export_shouldWriteOneJsonObjectPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exporter.export(spec, CardExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertThat(lines).hasSize(3);
+        assertThat(lines[2]).isEmpty();
+        assertThat(objectMapper.readTree(lines[0]).get("id").asText()).isEqualTo(firstId.toString());
+        assertThat(objectMapper.readTree(lines[0]).get("number").asText()).isEqualTo("**** **** **** 3456");
+        assertThat(objectMapper.readTree(lines[0]).get("balance").decimalValue()).isEqualByComparingTo("12.50");
+        assertThat(objectMapper.readTree(lines[1]).get("expirationDate").asText()).isEqualTo("2028-06-30");
+        assertThat(closed).isTrue();
+        verify(transactionManager).commit(transactionStatus);
+    }
+
+    @Test
+    void export_shouldWriteCsvWithHeader() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exporter.export(spec, CardExportFormat.CSV, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("""
+                id,number,expirationDate,status,balance
+                00000000-0000-0000-0000-000000000001,**** **** **** 3456,2027-01-31,ACTIVE,12.50
+                00000000-0000-0000-0000-000000000002,**** **** **** 4444,2028-06-30,BLOCKED,0.00
+                """);
+        assertThat(closed).isTrue();
+    }
+
+    @Test
+    void export_shouldCloseCursorAndRollBack_whenClientDisconnects() {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> exporter.export(spec, CardExportFormat.CSV, broken))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+        assertThat(closed).isTrue();
+        verify(transactionManager).rollback(transactionStatus);
+        verify(cardRepository).streamViews(ArgumentMatchers.same(spec), eq(50));
+    }
+
+    @Test
+    void open_shouldRejectExport_whenAllPermitsAreTaken() throws Exception {
+        CardExport running = exporter.open(spec, CardExportFormat.CSV);
+
+        assertThatThrownBy(() -> exporter.open(spec, CardExportFormat.CSV))
+                .isInstanceOf(CardExportLimitExceededException.class);
+        verifyNoInteractions(cardRepository);
+
+        running.writeTo(new ByteArrayOutputStream());
+        assertThat(exporter.open(spec, CardExportFormat.CSV)).isNotNull();
+    }
+
+    @Test
+    void open_shouldReleasePermitOnce_whenExportNeverStarted() {
+        CardExport abandoned = exporter.open(spec, CardExportFormat.CSV);
+
+        abandoned.close();
+        abandoned.close();
+
+        CardExport next = exporter.open(spec, CardExportFormat.CSV);
+        assertThatThrownBy(() -> exporter.open(spec, CardExportFormat.CSV))
+                .isInstanceOf(CardExportLimitExceededException.class);
+        next.close();
+    }
+
+    @Test
+    void open_shouldReleasePermit_whenClientDisconnects() {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> exporter.open(spec, CardExportFormat.CSV).writeTo(broken))
+                .isInstanceOf(IOException.class);
+
+        assertThat(exporter.open(spec, CardExportFormat.CSV)).isNotNull();
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.bankcards.service.impl;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.example.bankcards.entity.CardTransaction;
+import com.example.bankcards.repository.CardTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardLedgerServiceImplTest {
+
+    @Mock
+    private CardTransactionRepository cardTransactionRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CardLedgerServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new CardLedgerServiceImpl(cardTransactionRepository, meterRegistry);
+    }
+
+    @Test
+    void recordTransfer_shouldWriteDebitAndCreditLegs() {
+        UUID fromId = UUID.randomUUID();
+        UUID toId = UUID.randomUUID();
+
+        service.recordTransfer(fromId, toId, new BigDecimal("25.50"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CardTransaction>> legs = ArgumentCaptor.forClass(List.class);
+        verify(cardTransactionRepository).saveAll(legs.capture());
+        assertThat(legs.getValue())
+                .extracting(CardTransaction::getCardId, CardTransaction::getType, CardTransaction::getAmount)
+                .containsExactly(
+                        tuple(fromId, CardTransaction.Type.DEBIT, new BigDecimal("-25.50")),
+                        tuple(toId, CardTransaction.Type.CREDIT, new BigDecimal("25.50")));
+        assertThat(legs.getValue().get(0).getTransferId()).isEqualTo(legs.getValue().get(1).getTransferId());
+    }
+
+    @Test
+    void recordOpenings_shouldWriteOneOpeningPerCardInOneSaveAll() {
+        UUID firstId = UUID.randomUUID();
+        UUID secondId = UUID.randomUUID();
+        Map<UUID, BigDecimal> balances = new LinkedHashMap<>();
+        balances.put(firstId, new BigDecimal("100.00"));
+        balances.put(secondId, BigDecimal.ZERO);
+
+        service.recordOpenings(balances);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CardTransaction>> openings = ArgumentCaptor.forClass(List.class);
+        verify(cardTransactionRepository).saveAll(openings.capture());
+        assertThat(openings.getValue())
+                .extracting(CardTransaction::getCardId, CardTransaction::getType, CardTransaction::getAmount)
+                .containsExactly(
+                        tuple(firstId, CardTransaction.Type.OPENING, new BigDecimal("100.00")),
+                        tuple(secondId, CardTransaction.Type.OPENING, BigDecimal.ZERO));
+    }
+
+    @Test
+    void checkpointAndReconcile_shouldSkip_whenAnotherInstanceHoldsLock() {
+        when(cardTransactionRepository.tryAdvisoryLock(anyLong())).thenReturn(false);
+
+        service.checkpointAndReconcile();
+
+        verify(cardTransactionRepository, never()).createCheckpoints(anyLong(), anyLong());
+    }
+
+    @Test
+    void checkpointAndReconcile_shouldSkip_whenNoTransactionCommittedSinceLatestCheckpoint() {
+        when(cardTransactionRepository.tryAdvisoryLock(anyLong())).thenReturn(true);
+        when(cardTransactionRepository.findLatestCheckpointWatermark()).thenReturn(Optional.of(700L));
+        when(cardTransactionRepository.findCommitWatermark()).thenReturn(700L);
+
+        service.checkpointAndReconcile();
+
+        verify(cardTransactionRepository, never()).findMismatches(anyLong(), anyLong());
+        verify(cardTransactionRepository, never()).createCheckpoints(anyLong(), anyLong());
+    }
+
+    @Test
+    void checkpointAndReconcile_shouldContinueFromLatestWatermark_andReportMismatches() {
+        UUID cardId = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+        when(cardTransactionRepository.tryAdvisoryLock(anyLong())).thenReturn(true);
+        when(cardTransactionRepository.findLatestCheckpointWatermark()).thenReturn(Optional.of(700L));
+        when(cardTransactionRepository.findCommitWatermark()).thenReturn(742L);
+        when(cardTransactionRepository.findMismatches(700L, 742L))
+                .thenReturn(List.of(mismatch(cardId, "150.00", "120.00")));
+        Logger logger = (Logger) LoggerFactory.getLogger(CardLedgerServiceImpl.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+
+        try {
+            service.checkpointAndReconcile();
+        } finally {
+            logger.detachAppender(appender);
+        }
+
+        verify(cardTransactionRepository).createCheckpoints(700L, 742L);
+        assertThat(meterRegistry.get("app.ledger.mismatches").counter().count()).isEqualTo(1);
+        assertThat(appender.list)
+                .filteredOn(event -> event.getLevel() == Level.ERROR)
+                .extracting(ILoggingEvent::getFormattedMessage)
+                .containsExactly("Card " + cardId + " balance 150.00 does not match ledger balance 120.00");
+    }
+
+    private CardTransactionRepository.LedgerMismatch mismatch(UUID cardId, String cardBalance, String ledgerBalance) {
+        return new CardTransactionRepository.LedgerMismatch() {
+            @Override
+            public UUID getCardId() {
+                return cardId;
+            }
+
+            @Override
+            public BigDecimal getCardBalance() {
+                return new BigDecimal(cardBalance);
+            }
+
+            @Override
+            public BigDecimal getLedgerBalance() {
+                return new BigDecimal(ledgerBalance);
+            }
+        };
+    }
+}
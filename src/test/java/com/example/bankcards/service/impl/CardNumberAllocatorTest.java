@@ -0,0 +1,135 @@
+package com.example.bankcards.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardNumberAllocatorTest {
+
+    private static final String NEXT_BLOCK_SQL = "SELECT nextval('card_number_block_seq')";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final AtomicLong blocks = new AtomicLong();
+
+    private CardNumberAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(jdbcTemplate.queryForObject(NEXT_BLOCK_SQL, Long.class)).thenAnswer(i -> blocks.getAndIncrement());
+        allocator = new CardNumberAllocator(jdbcTemplate, "220000", "test-key");
+    }
+
+    @Test
+    void next_shouldReturnUniqueLuhnValidNumbersWithBin() {
+        Set<String> numbers = new HashSet<>();
+        for (int i = 0; i < 2_500; i++) {
+            String number = allocator.next();
+            assertThat(number).matches("2200 00\\d{2} \\d{4} \\d{4}");
+            assertThat(isLuhnValid(number)).as(number).isTrue();
+            numbers.add(number);
+        }
+
+        assertThat(numbers).hasSize(2_500);
+        verify(jdbcTemplate, times(3)).queryForObject(NEXT_BLOCK_SQL, Long.class);
+    }
+
+    @Test
+    void next_shouldNotHandOutSequentialNumbers() {
+        List<Long> accounts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            accounts.add(Long.parseLong(allocator.next().replace(" ", "").substring(6, 15)));
+        }
+
+        for (int i = 1; i < accounts.size(); i++) {
+            assertThat(Math.abs(accounts.get(i) - accounts.get(i - 1))).isGreaterThan(1);
+        }
+    }
+
+    @Test
+    void next_shouldDependOnKey() {
+        CardNumberAllocator otherKey = new CardNumberAllocator(jdbcTemplate, "220000", "other-key");
+
+        assertThat(allocator.permute(0)).isNotEqualTo(otherKey.permute(0));
+    }
+
+    @Test
+    void next_shouldStayUniqueAcrossThreads() throws Exception {
+        Set<String> numbers = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        numbers.add(allocator.next());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(numbers).hasSize(16_000);
+        verify(jdbcTemplate, times(16)).queryForObject(NEXT_BLOCK_SQL, Long.class);
+    }
+
+    @Test
+    void permute_shouldBeBijectionOnAccountRange() {
+        Set<Long> images = new HashSet<>();
+        for (long value = 0; value < 20_000; value++) {
+            long image = allocator.permute(value);
+            assertThat(image).isBetween(0L, 999_999_999L);
+            images.add(image);
+        }
+
+        assertThat(images).hasSize(20_000);
+    }
+
+    @Test
+    void next_shouldFail_whenNumberSpaceIsExhausted() {
+        blocks.set(1_000_000);
+
+        assertThatThrownBy(allocator::next)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("exhausted");
+    }
+
+    @Test
+    void constructor_shouldRejectInvalidBin() {
+        assertThatThrownBy(() -> new CardNumberAllocator(jdbcTemplate, "2200", "test-key"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void luhnCheckDigit_shouldMatchKnownNumber() {
+        assertThat(CardNumberAllocator.luhnCheckDigit("7992739871")).isEqualTo(3);
+        assertThat(isLuhnValid("7992 7398 713")).isTrue();
+    }
+
+    private static boolean isLuhnValid(String number) {
+        String digits = number.replace(" ", "");
+        return CardNumberAllocator.luhnCheckDigit(digits.substring(0, digits.length() - 1))
+                == digits.charAt(digits.length() - 1) - '0';
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardResponseCacheTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID cardId = UUID.randomUUID();
+
+    private CardResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cache = new CardResponseCache(cardRepository, cacheInvalidationBus, meterRegistry, 100, Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void get_shouldLoadOnce_andCountHitRatio() {
+        when(cardRepository.findViewById(cardId)).thenReturn(Optional.of(view(CardStatus.ACTIVE)));
+
+        CardResponse first = cache.get(cardId);
+        CardResponse second = cache.get(cardId);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.getBalance()).isEqualByComparingTo("12.50");
+        verify(cardRepository, times(1)).findViewById(cardId);
+        assertThat(meterRegistry.get("app.card-cache.hit-ratio").gauge().value()).isEqualTo(0.5);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void get_shouldNotCacheMissingCard() {
+        when(cardRepository.findViewById(cardId)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> cache.get(cardId)).isInstanceOf(CardNotFoundException.class);
+        assertThatThrownBy(() -> cache.get(cardId)).isInstanceOf(CardNotFoundException.class);
+
+        verify(cardRepository, times(2)).findViewById(cardId);
+    }
+
+    @Test
+    void get_shouldCoalesceConcurrentMisses() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(cardRepository.findViewById(cardId)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(view(CardStatus.ACTIVE));
+        });
+
+        CompletableFuture<CardResponse> first = CompletableFuture.supplyAsync(() -> cache.get(cardId));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<CardResponse> second = CompletableFuture.supplyAsync(() -> cache.get(cardId));
+        release.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+        verify(cardRepository, times(1)).findViewById(cardId);
+    }
+
+    @Test
+    void evictAfterCommit_shouldKeepEntryUntilCommit() {
+        when(cardRepository.findViewById(cardId))
+                .thenReturn(Optional.of(view(CardStatus.ACTIVE)))
+                .thenReturn(Optional.of(view(CardStatus.BLOCKED)));
+        cache.get(cardId);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evictAfterCommit(cardId);
+        assertThat(cache.get(cardId).getStatus()).isEqualTo(CardStatus.ACTIVE);
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(cache.get(cardId).getStatus()).isEqualTo(CardStatus.BLOCKED);
+    }
+
+    @Test
+    void evictAfterCommit_shouldKeepEntry_whenTransactionRolledBack() {
+        when(cardRepository.findViewById(cardId)).thenReturn(Optional.of(view(CardStatus.ACTIVE)));
+        cache.get(cardId);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evictAfterCommit(cardId);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        cache.get(cardId);
+        verify(cardRepository, times(1)).findViewById(cardId);
+    }
+
+    @Test
+    void evictAfterCommit_shouldEvictImmediately_withoutTransaction() {
+        when(cardRepository.findViewById(cardId)).thenReturn(Optional.of(view(CardStatus.ACTIVE)));
+        cache.get(cardId);
+
+        cache.evictAfterCommit(cardId);
+        cache.get(cardId);
+
+        verify(cardRepository, times(2)).findViewById(cardId);
+        verify(cacheInvalidationBus).publish(CacheInvalidationBus.Topic.CARD, List.of(cardId));
+    }
+
+    @Test
+    void busNotification_shouldEvictEntryChangedOnAnotherNode() {
+        ArgumentCaptor<CacheInvalidationBus.Subscriber> subscriber =
+                ArgumentCaptor.forClass(CacheInvalidationBus.Subscriber.class);
+        verify(cacheInvalidationBus).subscribe(eq(CacheInvalidationBus.Topic.CARD), subscriber.capture());
+        when(cardRepository.findViewById(cardId)).thenReturn(Optional.of(view(CardStatus.ACTIVE)));
+        cache.get(cardId);
+
+        subscriber.getValue().evict(List.of(cardId));
+        cache.get(cardId);
+        subscriber.getValue().evictAll();
+        cache.get(cardId);
+
+        verify(cardRepository, times(3)).findViewById(cardId);
+    }
+
+    private CardView view(CardStatus status) {
+        return new CardView(cardId, "1234 5678 9012 3456", LocalDate.of(2027, 1, 31),
+                status, Money.of(10), BigDecimal.valueOf(2.5));
+    }
+}
@@ -1,16 +1,28 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.BulkCardRequest;
+import com.example.bankcards.dto.BulkCardResponse;
+import com.example.bankcards.dto.CardCursor;
+import com.example.bankcards.dto.CardExportFormat;
 import com.example.bankcards.dto.CardFilter;
 import com.example.bankcards.dto.CardRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSlice;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.*;
 import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCursorException;
 import com.example.bankcards.exception.StatusAlreadySetException;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.CardBlockRequestRepository;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardView;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardExport;
+import com.example.bankcards.service.CardLedgerService;
 import com.example.bankcards.util.CardMapperFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -21,7 +33,9 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -31,6 +45,15 @@ class CardServiceImplTest {
     @Mock private CardRepository cardRepository;
     @Mock private UserRepository userRepository;
     @Mock private CardBlockRequestRepository blockRequestRepo;
+    @Mock private CardTransferExecutor cardTransferExecutor;
+    @Mock private CardTransferSequencer cardTransferSequencer;
+    @Mock private CardBatchTransferExecutor cardBatchTransferExecutor;
+    @Mock private CardLedgerService cardLedgerService;
+    @Mock private CardBalanceStripes cardBalanceStripes;
+    @Mock private CardResponseCache cardResponseCache;
+    @Mock private CardExporter cardExporter;
+    @Mock private CardNumberAllocator cardNumberAllocator;
+    @Mock private CardBulkIssuer cardBulkIssuer;
 
     @InjectMocks
     private CardServiceImpl service;
@@ -49,15 +72,17 @@ class CardServiceImplTest {
                 .build();
 
         User user = new User();
-        Card card = CardMapperFactory.toCard(user, request.getBalance());
+        Card card = CardMapperFactory.toCard(user, "2200 0012 3456 7890", Money.of(request.getBalance()));
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(cardNumberAllocator.next()).thenReturn("2200 0012 3456 7890");
         when(cardRepository.save(any(Card.class))).thenReturn(card);
 
         var result = service.createCard(request);
 
         assertThat(result).isNotNull();
-        verify(cardRepository).save(any(Card.class));
+        verify(cardRepository).save(argThat(saved -> "2200 0012 3456 7890".equals(saved.getNumber())));
+        verify(cardLedgerService).recordOpening(card.getId(), new BigDecimal("5000.00"));
     }
 
     @Test
@@ -76,22 +101,34 @@ class CardServiceImplTest {
     }
 
     @Test
-    void getCardById_shouldReturnCard() {
+    void createCards_shouldDelegateToBulkIssuer() {
+        BulkCardRequest request = new BulkCardRequest();
+        request.setCards(List.of(new CardRequest(UUID.randomUUID(), BigDecimal.TEN)));
+        BulkCardResponse response = new BulkCardResponse(1, 0, List.of());
+        when(cardBulkIssuer.issue(request.getCards())).thenReturn(response);
+
+        var result = service.createCards(request);
+
+        assertThat(result).isSameAs(response);
+        verifyNoInteractions(cardRepository, userRepository);
+    }
+
+    @Test
+    void getCardById_shouldReadThroughCache() {
         UUID cardId = UUID.randomUUID();
-        Card card = new Card();
-        card.setId(cardId);
-        card.setBalance(BigDecimal.TEN);
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
+        CardResponse card = CardResponse.builder().id(cardId).build();
+        when(cardResponseCache.get(cardId)).thenReturn(card);
 
         var result = service.getCardById(cardId);
 
-        assertThat(result.getId()).isEqualTo(cardId);
+        assertThat(result).isSameAs(card);
+        verifyNoInteractions(cardRepository);
     }
 
     @Test
     void getCardById_shouldThrowException_whenCardNotFound() {
         UUID cardId = UUID.randomUUID();
-        when(cardRepository.findById(cardId)).thenReturn(Optional.empty());
+        when(cardResponseCache.get(cardId)).thenThrow(new CardNotFoundException(cardId));
 
         assertThatThrownBy(() -> service.getCardById(cardId))
                 .isInstanceOf(CardNotFoundException.class)
@@ -99,54 +136,64 @@ class CardServiceImplTest {
     }
 
     @Test
-    void transferBetweenMyCards_shouldTransferFunds() {
-        UUID fromId = UUID.randomUUID();
-        UUID toId = UUID.randomUUID();
+    void transferBetweenMyCards_shouldDelegateToExecutor() {
         UUID userId = UUID.randomUUID();
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(UUID.randomUUID());
+        request.setToCardId(UUID.randomUUID());
+        request.setAmount(Money.of(30));
 
-        User user = User.builder().id(userId).build();
+        Runnable onApplied = () -> {
+        };
 
-        Card fromCard = Card.builder()
-                .id(fromId)
-                .user(user)
-                .balance(BigDecimal.valueOf(100))
-                .status(CardStatus.ACTIVE)
-                .build();
+        service.transferBetweenMyCards(request, userId, onApplied);
 
-        Card toCard = Card.builder()
-                .id(toId)
-                .user(user)
-                .balance(BigDecimal.valueOf(50))
-                .status(CardStatus.ACTIVE)
-                .build();
+        verify(cardTransferExecutor).transfer(request, userId, onApplied);
+    }
 
+    @Test
+    void transferBetweenMyCards_shouldWaitForSequencer_whenEnabled() {
+        UUID userId = UUID.randomUUID();
         TransferRequest request = new TransferRequest();
-        request.setFromCardId(fromId);
-        request.setToCardId(toId);
-        request.setAmount(BigDecimal.valueOf(30));
+        when(cardTransferSequencer.isEnabled()).thenReturn(true);
+        when(cardTransferSequencer.submit(eq(request), eq(userId), any()))
+                .thenReturn(CompletableFuture.failedFuture(new InsufficientFundsException()));
 
-        when(cardRepository.findByIdAndUserId(fromId, userId)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndUserId(toId, userId)).thenReturn(Optional.of(toCard));
+        assertThatThrownBy(() -> service.transferBetweenMyCards(request, userId))
+                .isInstanceOf(InsufficientFundsException.class);
+        verifyNoInteractions(cardTransferExecutor);
+    }
 
-        service.transferBetweenMyCards(request, userId);
+    @Test
+    void transferBetweenMyCardsAsync_shouldReturnSequencerFuture_whenEnabled() {
+        UUID userId = UUID.randomUUID();
+        TransferRequest request = new TransferRequest();
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        when(cardTransferSequencer.isEnabled()).thenReturn(true);
+        when(cardTransferSequencer.submit(request, userId)).thenReturn(pending);
 
-        assertThat(fromCard.getBalance()).isEqualByComparingTo("70");
-        assertThat(toCard.getBalance()).isEqualByComparingTo("80");
-        verify(cardRepository, times(2)).save(any(Card.class));
+        assertThat(service.transferBetweenMyCardsAsync(request, userId)).isSameAs(pending);
+        verifyNoInteractions(cardTransferExecutor);
     }
 
     @Test
-    void transferBetweenMyCards_shouldThrowException_whenFromCardNotFound() {
+    void transferBetweenMyCardsAsync_shouldTransferInline_whenSequencerDisabled() {
         UUID userId = UUID.randomUUID();
         TransferRequest request = new TransferRequest();
-        request.setFromCardId(UUID.randomUUID());
-        request.setToCardId(UUID.randomUUID());
-        request.setAmount(BigDecimal.valueOf(50));
 
-        when(cardRepository.findByIdAndUserId(request.getFromCardId(), userId)).thenReturn(Optional.empty());
+        assertThat(service.transferBetweenMyCardsAsync(request, userId)).isCompleted();
+        verify(cardTransferExecutor).transfer(request, userId);
+        verify(cardTransferSequencer, never()).submit(any(), any());
+    }
 
-        assertThatThrownBy(() -> service.transferBetweenMyCards(request, userId))
-                .isInstanceOf(CardNotFoundException.class);
+    @Test
+    void transferBatchBetweenMyCards_shouldDelegateToBatchExecutor() {
+        UUID userId = UUID.randomUUID();
+        BatchTransferRequest request = new BatchTransferRequest();
+        BatchTransferResponse response = new BatchTransferResponse(true, 0, 0, List.of());
+        when(cardBatchTransferExecutor.transfer(request, userId)).thenReturn(response);
+
+        assertThat(service.transferBatchBetweenMyCards(request, userId)).isSameAs(response);
     }
 
     @Test
@@ -159,7 +206,7 @@ class CardServiceImplTest {
         Card card = Card.builder()
                 .id(cardId)
                 .user(user)
-                .balance(BigDecimal.valueOf(123.45))
+                .balance(Money.parse("123.45"))
                 .status(CardStatus.ACTIVE)
                 .build();
 
@@ -170,6 +217,25 @@ class CardServiceImplTest {
         assertThat(balance).isEqualByComparingTo("123.45");
     }
 
+    @Test
+    void getMyCardBalance_shouldIncludeStripes() {
+        UUID cardId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        Card card = Card.builder()
+                .id(cardId)
+                .user(User.builder().id(userId).build())
+                .balance(Money.of(100))
+                .stripedBalance(BigDecimal.valueOf(40.5))
+                .stripeCount(4)
+                .status(CardStatus.ACTIVE)
+                .build();
+
+        when(cardRepository.findByIdAndUserId(cardId, userId)).thenReturn(Optional.of(card));
+
+        assertThat(service.getMyCardBalance(cardId, userId)).isEqualByComparingTo("140.5");
+    }
+
     @Test
     void getMyCardBalance_shouldThrowException_whenCardNotFound() {
         UUID cardId = UUID.randomUUID();
@@ -240,14 +306,9 @@ class CardServiceImplTest {
         filter.setPageNumber(0);
         filter.setPageSize(10);
 
-        Card card = new Card();
-        card.setId(UUID.randomUUID());
-        card.setNumber("1234 5678 9012 3456");
-        card.setStatus(CardStatus.ACTIVE);
-
-        Page<Card> page = new PageImpl<>(List.of(card));
+        Page<CardView> page = new PageImpl<>(List.of(cardView("1234 5678 9012 3456", LocalDate.of(2027, 1, 31))));
 
-        when(cardRepository.findAll(ArgumentMatchers.<Specification<Card>>any(), any(Pageable.class))).thenReturn(page);
+        when(cardRepository.findViews(ArgumentMatchers.<Specification<Card>>any(), any(Pageable.class))).thenReturn(page);
 
         Page<CardResponse> result = service.getAllCards(filter);
 
@@ -255,7 +316,80 @@ class CardServiceImplTest {
         assertThat(result.getContent()).hasSize(1);
         assertThat(result.getContent().get(0).getNumber()).endsWith("3456");
 
-        verify(cardRepository).findAll(ArgumentMatchers.<Specification<Card>>any(), any(Pageable.class));
+        verify(cardRepository).findViews(ArgumentMatchers.<Specification<Card>>any(), any(Pageable.class));
+        verify(cardRepository, never()).findAll(ArgumentMatchers.<Specification<Card>>any(), any(Pageable.class));
+    }
+
+    @Test
+    void exportCards_shouldOpenExportWithoutQueryingCards() {
+        CardFilter filter = new CardFilter();
+        filter.setStatus(CardStatus.ACTIVE);
+        CardExport export = mock(CardExport.class);
+        when(cardExporter.open(ArgumentMatchers.<Specification<Card>>notNull(), eq(CardExportFormat.NDJSON)))
+                .thenReturn(export);
+
+        assertThat(service.exportCards(filter, CardExportFormat.NDJSON)).isSameAs(export);
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void scrollAllCards_shouldReturnCursorOfLastCard_whenMoreCardsExist() {
+        CardFilter filter = new CardFilter();
+        filter.setPageSize(2);
+        CardView first = cardView("1234 5678 9012 3456", LocalDate.of(2027, 1, 31));
+        CardView second = cardView("1234 5678 9012 3457", LocalDate.of(2027, 2, 28));
+        CardView extra = cardView("1234 5678 9012 3458", LocalDate.of(2027, 3, 31));
+
+        when(cardRepository.findAfter(any(), isNull(), eq(3))).thenReturn(List.of(first, second, extra));
+
+        CardSlice result = service.scrollAllCards(filter);
+
+        assertThat(result.getContent()).extracting(CardResponse::getId).containsExactly(first.id(), second.id());
+        assertThat(result.isHasNext()).isTrue();
+        assertThat(CardCursor.decode(result.getNextCursor())).isEqualTo(CardCursor.after(second));
+        assertThat(result.getTotalElements()).isNull();
+        verify(cardRepository, never()).count(ArgumentMatchers.<Specification<Card>>any());
+    }
+
+    @Test
+    void scrollAllCards_shouldContinueAfterCursor_andCountOnlyOnRequest() {
+        CardView last = cardView("1234 5678 9012 3456", LocalDate.of(2027, 1, 31));
+        CardCursor cursor = new CardCursor(LocalDate.of(2026, 12, 31), UUID.randomUUID());
+        CardFilter filter = CardFilter.builder()
+                .pageSize(5)
+                .cursor(cursor.encode())
+                .includeTotal(true)
+                .build();
+
+        when(cardRepository.findAfter(any(), eq(cursor), eq(6))).thenReturn(List.of(last));
+        when(cardRepository.count(ArgumentMatchers.<Specification<Card>>any())).thenReturn(6L);
+
+        CardSlice result = service.scrollAllCards(filter);
+
+        assertThat(result.getContent()).hasSize(1);
+        assertThat(result.isHasNext()).isFalse();
+        assertThat(result.getNextCursor()).isNull();
+        assertThat(result.getTotalElements()).isEqualTo(6L);
+        verify(cardRepository, never()).findViews(ArgumentMatchers.<Specification<Card>>any(), any(Pageable.class));
+    }
+
+    @Test
+    void scrollAllCards_shouldCapPageSize() {
+        CardFilter filter = CardFilter.builder().pageSize(Integer.MAX_VALUE).build();
+        when(cardRepository.findAfter(any(), isNull(), anyInt())).thenReturn(List.of());
+
+        service.scrollAllCards(filter);
+
+        verify(cardRepository).findAfter(any(), isNull(), eq(1001));
+    }
+
+    @Test
+    void scrollAllCards_shouldThrowException_whenCursorIsMalformed() {
+        CardFilter filter = CardFilter.builder().cursor("not-a-cursor").build();
+
+        assertThatThrownBy(() -> service.scrollAllCards(filter))
+                .isInstanceOf(InvalidCursorException.class);
+        verifyNoInteractions(cardRepository);
     }
 
     @Test
@@ -266,6 +400,7 @@ class CardServiceImplTest {
         card.setId(cardId);
         card.setNumber("1111 2222 3333 4444");
         card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.of(100));
 
         when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
         when(cardRepository.save(any(Card.class))).thenAnswer(i -> i.getArgument(0));
@@ -277,6 +412,7 @@ class CardServiceImplTest {
 
         verify(cardRepository).findById(cardId);
         verify(cardRepository).save(card);
+        verify(cardResponseCache).evictAfterCommit(cardId);
     }
 
     @Test
@@ -303,6 +439,7 @@ class CardServiceImplTest {
         card.setId(cardId);
         card.setNumber("5555 6666 7777 8888");
         card.setStatus(CardStatus.BLOCKED);
+        card.setBalance(Money.of(100));
 
         when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
         when(cardRepository.save(any(Card.class))).thenAnswer(i -> i.getArgument(0));
@@ -342,6 +479,7 @@ class CardServiceImplTest {
 
         verify(cardRepository).existsById(cardId);
         verify(cardRepository).deleteById(cardId);
+        verify(cardResponseCache).evictAfterCommit(cardId);
     }
 
     @Test
@@ -356,6 +494,37 @@ class CardServiceImplTest {
 
         verify(cardRepository).existsById(cardId);
         verify(cardRepository, never()).deleteById(any());
+        verifyNoInteractions(cardResponseCache);
+    }
+
+    @Test
+    void setBalanceStripes_shouldResizeAndReturnCard() {
+        UUID cardId = UUID.randomUUID();
+        Card card = Card.builder()
+                .id(cardId)
+                .number("1234 5678 9012 3456")
+                .balance(Money.of(100))
+                .stripedBalance(BigDecimal.valueOf(25))
+                .stripeCount(8)
+                .status(CardStatus.ACTIVE)
+                .build();
+
+        when(cardBalanceStripes.resize(cardId, 8)).thenReturn(true);
+        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
+
+        CardResponse response = service.setBalanceStripes(cardId, 8);
+
+        assertThat(response.getBalance()).isEqualByComparingTo("125");
+    }
+
+    @Test
+    void setBalanceStripes_shouldThrowException_whenCardNotFound() {
+        UUID cardId = UUID.randomUUID();
+
+        when(cardBalanceStripes.resize(cardId, 8)).thenReturn(false);
+
+        assertThatThrownBy(() -> service.setBalanceStripes(cardId, 8))
+                .isInstanceOf(CardNotFoundException.class);
     }
 
     @Test
@@ -365,14 +534,9 @@ class CardServiceImplTest {
         filter.setPageNumber(0);
         filter.setPageSize(10);
 
-        Card card = new Card();
-        card.setId(UUID.randomUUID());
-        card.setUser(null);
-        card.setNumber("9999 8888 7777 6666");
-
-        Page<Card> page = new PageImpl<>(List.of(card));
+        Page<CardView> page = new PageImpl<>(List.of(cardView("9999 8888 7777 6666", LocalDate.of(2027, 1, 31))));
 
-        when(cardRepository.findAll(ArgumentMatchers.<Specification<Card>>any(), any(Pageable.class)))
+        when(cardRepository.findViews(ArgumentMatchers.<Specification<Card>>any(), any(Pageable.class)))
                 .thenReturn(page);
 
         Page<CardResponse> result = service.getAllMyCards(userId, filter);
@@ -384,6 +548,24 @@ class CardServiceImplTest {
 
         assertThat(filter.getUserId()).isEqualTo(userId);
 
-        verify(cardRepository).findAll(ArgumentMatchers.<Specification<Card>>any(), any(Pageable.class));
+        verify(cardRepository).findViews(ArgumentMatchers.<Specification<Card>>any(), any(Pageable.class));
+    }
+
+    @Test
+    void scrollAllMyCards_shouldFilterByUser() {
+        UUID userId = UUID.randomUUID();
+        CardFilter filter = new CardFilter();
+
+        when(cardRepository.findAfter(any(), isNull(), eq(6))).thenReturn(List.of());
+
+        CardSlice result = service.scrollAllMyCards(userId, filter);
+
+        assertThat(result.getContent()).isEmpty();
+        assertThat(result.isHasNext()).isFalse();
+        assertThat(filter.getUserId()).isEqualTo(userId);
+    }
+
+    private CardView cardView(String number, LocalDate expirationDate) {
+        return new CardView(UUID.randomUUID(), number, expirationDate, CardStatus.ACTIVE, Money.of(100), null);
     }
 }
@@ -0,0 +1,80 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.UserRole;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Пользователь с картами для тестов на реальной PostgreSQL. Удаление пользователя каскадом удаляет его карты,
+ * а журнал и контрольные точки внешнего ключа на карты не имеют и удаляются отдельно.
+ */
+class CardTestFixture {
+
+    private final UserRepository userRepository;
+    private final CardRepository cardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final User user;
+
+    CardTestFixture(UserRepository userRepository, CardRepository cardRepository, JdbcTemplate jdbcTemplate,
+                    String lastName) {
+        this.userRepository = userRepository;
+        this.cardRepository = cardRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.user = userRepository.save(User.builder()
+                .firstName("Test")
+                .lastName(lastName)
+                .email(lastName.toLowerCase() + "-" + UUID.randomUUID() + "@mail.com")
+                .password("not-used")
+                .role(UserRole.ROLE_USER)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    User user() {
+        return user;
+    }
+
+    UUID userId() {
+        return user.getId();
+    }
+
+    UUID createCard(Money balance) {
+        return cardRepository.save(Card.builder()
+                .number(String.format("%016d", ThreadLocalRandom.current().nextLong(10_000_000_000_000_000L)))
+                .user(user)
+                .expirationDate(LocalDate.now().plusYears(4))
+                .status(CardStatus.ACTIVE)
+                .balance(balance)
+                .build()).getId();
+    }
+
+    // Баланс вместе с полосами, чтобы проверка сохранения денег не зависела от режима зачисления
+    Money totalBalance(Collection<UUID> cardIds) {
+        return cardRepository.findAllById(cardIds).stream()
+                .map(Card::getTotalBalance)
+                .reduce(Money.ZERO, Money::plus);
+    }
+
+    void delete() {
+        jdbcTemplate.update("""
+                DELETE FROM bankcards.card_transactions
+                 WHERE card_id IN (SELECT id FROM bankcards.cards WHERE user_id = ?)
+                """, user.getId());
+        jdbcTemplate.update("""
+                DELETE FROM bankcards.card_balance_checkpoints
+                 WHERE card_id IN (SELECT id FROM bankcards.cards WHERE user_id = ?)
+                """, user.getId());
+        userRepository.deleteById(user.getId());
+    }
+}
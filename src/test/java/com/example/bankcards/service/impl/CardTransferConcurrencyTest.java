@@ -0,0 +1,116 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.AppUserDetails;
+import com.example.bankcards.service.CardService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Нагрузочный тест переводов на реальной PostgreSQL: встречные переводы A→B и B→A выполняются параллельно.
+ * Запуск: BANKCARDS_IT_DB=true mvn test -Dtest=CardTransferConcurrencyTest
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_IT_DB", matches = "true")
+class CardTransferConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 200;
+    private static final int CARDS = 3;
+    private static final Money INITIAL_BALANCE = Money.of(1_000_000);
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CardTestFixture fixture;
+    private final List<UUID> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        fixture = new CardTestFixture(userRepository, cardRepository, jdbcTemplate, "Stress");
+        for (int i = 0; i < CARDS; i++) {
+            cardIds.add(fixture.createCard(INITIAL_BALANCE));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.delete();
+    }
+
+    @Test
+    void concurrentOpposingTransfers_shouldConserveTotalBalance() throws Exception {
+        AppUserDetails principal = new AppUserDetails(fixture.user());
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+                try {
+                    start.await();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int from = ThreadLocalRandom.current().nextInt(CARDS);
+                        int to = (from + 1 + ThreadLocalRandom.current().nextInt(CARDS - 1)) % CARDS;
+                        try {
+                            cardService.transferBetweenMyCards(transfer(cardIds.get(from), cardIds.get(to)), fixture.userId());
+                        } catch (RuntimeException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertThat(failures.get()).as("deadlocks or lock timeouts").isZero();
+        assertThat(fixture.totalBalance(cardIds)).isEqualTo(Money.ofMinor(INITIAL_BALANCE.getMinorUnits() * CARDS));
+    }
+
+    private TransferRequest transfer(UUID fromId, UUID toId) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromId);
+        request.setToCardId(toId);
+        request.setAmount(Money.of(ThreadLocalRandom.current().nextInt(1, 100)));
+        return request;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardLedgerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Сравнение атомарного перевода (два условных UPDATE) с переводом через сущности и блокировки строк.
+ * Запуск: BANKCARDS_IT_DB=true mvn test -Dtest=CardTransferExecutorBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_IT_DB", matches = "true")
+class CardTransferExecutorBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int MEASURED_ITERATIONS = 5_000;
+    private static final Money INITIAL_BALANCE = Money.of(1_000_000);
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CardLedgerService cardLedgerService;
+
+    @Autowired
+    private CardBalanceStripes cardBalanceStripes;
+
+    @Autowired
+    private CardResponseCache cardResponseCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CardTestFixture fixture;
+    private UUID firstCardId;
+    private UUID secondCardId;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new CardTestFixture(userRepository, cardRepository, jdbcTemplate, "Benchmark");
+        firstCardId = fixture.createCard(INITIAL_BALANCE);
+        secondCardId = fixture.createCard(INITIAL_BALANCE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.delete();
+    }
+
+    @Test
+    void compareAtomicWithEntityBasedTransfer() {
+        double entityBased = measure(executor(CardTransferExecutor.Mode.PESSIMISTIC));
+        double atomic = measure(executor(CardTransferExecutor.Mode.ATOMIC));
+
+        log.info("Card transfer, us/op: entity-based with row locks={}, atomic updates={}",
+                "%.1f".formatted(entityBased), "%.1f".formatted(atomic));
+
+        assertThat(fixture.totalBalance(List.of(firstCardId, secondCardId))).isEqualTo(Money.ofMinor(INITIAL_BALANCE.getMinorUnits() * 2));
+        assertThat(atomic).isLessThan(entityBased);
+    }
+
+    private double measure(CardTransferExecutor executor) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            executor.transfer(transfer(i), fixture.userId());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            executor.transfer(transfer(i), fixture.userId());
+        }
+        return (System.nanoTime() - start) / 1_000.0 / MEASURED_ITERATIONS;
+    }
+
+    // Чередование направлений сохраняет балансы и нагружает обе строки одинаково
+    private TransferRequest transfer(int iteration) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(iteration % 2 == 0 ? firstCardId : secondCardId);
+        request.setToCardId(iteration % 2 == 0 ? secondCardId : firstCardId);
+        request.setAmount(Money.of(1));
+        return request;
+    }
+
+    private CardTransferExecutor executor(CardTransferExecutor.Mode mode) {
+        return new CardTransferExecutor(cardRepository, cardLedgerService, cardBalanceStripes, cardResponseCache,
+                transactionManager, new SimpleMeterRegistry(), mode, Duration.ofSeconds(3), 1, Duration.ZERO, Duration.ZERO);
+    }
+
+}
@@ -0,0 +1,353 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardIsNotActiveException;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidTransferAmountException;
+import com.example.bankcards.exception.OperationOutcomeUnknownException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.CardLedgerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardTransferExecutorTest {
+
+    @Mock private CardRepository cardRepository;
+    @Mock private CardLedgerService cardLedgerService;
+    @Mock private CardBalanceStripes cardBalanceStripes;
+    @Mock private CardResponseCache cardResponseCache;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private TransactionStatus transactionStatus;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID userId = UUID.randomUUID();
+    private final UUID fromId = UUID.randomUUID();
+    private final UUID toId = UUID.randomUUID();
+
+    private Card fromCard;
+    private Card toCard;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        User user = User.builder().id(userId).build();
+        fromCard = card(fromId, user, 100);
+        toCard = card(toId, user, 50);
+    }
+
+    @Test
+    void atomic_shouldUpdateRowsInIdOrder_withoutLoadingCards() {
+        UUID lower = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID higher = UUID.fromString("ffffffff-0000-0000-0000-000000000001");
+        BigDecimal amount = Money.of(30).toBigDecimal();
+        when(cardRepository.debitIfActiveAndSufficient(higher, userId, amount)).thenReturn(1);
+        when(cardRepository.creditIfActive(lower, userId, amount)).thenReturn(1);
+
+        executor(CardTransferExecutor.Mode.ATOMIC).transfer(transfer(higher, lower, 30), userId);
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).creditIfActive(lower, userId, amount);
+        inOrder.verify(cardRepository).debitIfActiveAndSufficient(higher, userId, amount);
+        verify(cardRepository, never()).findByIdAndUserId(any(), any());
+        verify(cardRepository, never()).save(any());
+        verify(cardLedgerService).recordTransfer(higher, lower, amount);
+        verify(cardResponseCache).evictAfterCommit(higher, lower);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void atomic_shouldSetLockTimeoutBeforeUpdates() {
+        when(cardRepository.debitIfActiveAndSufficient(any(), any(), any())).thenReturn(1);
+        when(cardRepository.creditIfActive(any(), any(), any())).thenReturn(1);
+
+        executor(CardTransferExecutor.Mode.ATOMIC).transfer(transfer(fromId, toId, 30), userId);
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).setLockTimeout("3000ms");
+        inOrder.verify(cardRepository, atLeastOnce()).debitIfActiveAndSufficient(any(), any(), any());
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, -30})
+    void atomic_shouldRejectNonPositiveAmount_beforeTouchingCards(long amount) {
+        assertThatThrownBy(() -> executor(CardTransferExecutor.Mode.ATOMIC)
+                .transfer(transfer(fromId, toId, amount), userId))
+                .isInstanceOf(InvalidTransferAmountException.class);
+        verifyNoInteractions(cardRepository, cardLedgerService, transactionManager);
+    }
+
+    @ParameterizedTest
+    @EnumSource(CardTransferExecutor.Mode.class)
+    void transfer_shouldRejectMissingAmount_inEveryMode(CardTransferExecutor.Mode mode) {
+        TransferRequest request = transfer(fromId, toId, 30);
+        request.setAmount(null);
+
+        assertThatThrownBy(() -> executor(mode).transfer(request, userId))
+                .isInstanceOf(InvalidTransferAmountException.class);
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void atomic_shouldThrowInsufficientFunds_whenDebitMatchesNoRowOfActiveCard() {
+        when(cardRepository.creditIfActive(any(), any(), any())).thenReturn(1);
+        when(cardRepository.findByIdAndUserId(fromId, userId)).thenReturn(Optional.of(fromCard));
+
+        assertThatThrownBy(() -> executor(CardTransferExecutor.Mode.ATOMIC)
+                .transfer(transfer(fromId, toId, 500), userId))
+                .isInstanceOf(InsufficientFundsException.class);
+        verifyNoInteractions(cardLedgerService, cardResponseCache);
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void atomic_shouldThrowCardIsNotActive_whenDebitCardBlocked() {
+        fromCard.setStatus(CardStatus.BLOCKED);
+        when(cardRepository.creditIfActive(any(), any(), any())).thenReturn(1);
+        when(cardRepository.findByIdAndUserId(fromId, userId)).thenReturn(Optional.of(fromCard));
+
+        assertThatThrownBy(() -> executor(CardTransferExecutor.Mode.ATOMIC)
+                .transfer(transfer(fromId, toId, 30), userId))
+                .isInstanceOf(CardIsNotActiveException.class);
+    }
+
+    @Test
+    void atomic_shouldThrowCardNotFound_whenCreditCardIsNotUsers() {
+        when(cardRepository.debitIfActiveAndSufficient(any(), any(), any())).thenReturn(1);
+        when(cardRepository.findByIdAndUserId(toId, userId)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> executor(CardTransferExecutor.Mode.ATOMIC)
+                .transfer(transfer(fromId, toId, 30), userId))
+                .isInstanceOf(CardNotFoundException.class)
+                .hasMessageContaining(toId.toString());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void atomic_shouldCreditStripe_whenTargetCardIsStriped() {
+        BigDecimal amount = Money.of(30).toBigDecimal();
+        when(cardRepository.debitIfActiveAndSufficient(fromId, userId, amount)).thenReturn(1);
+        when(cardBalanceStripes.credit(toId, userId, amount, fromId.hashCode())).thenReturn(true);
+
+        executor(CardTransferExecutor.Mode.ATOMIC).transfer(transfer(fromId, toId, 30), userId);
+
+        verify(cardRepository).creditIfActive(toId, userId, amount);
+        verify(cardRepository, never()).findByIdAndUserId(any(), any());
+        verify(cardLedgerService).recordTransfer(fromId, toId, amount);
+    }
+
+    @Test
+    void atomic_shouldFoldStripesAndRetryDebit_whenMainBalanceInsufficient() {
+        BigDecimal amount = Money.of(130).toBigDecimal();
+        fromCard.setStripeCount(4);
+        when(cardRepository.creditIfActive(any(), any(), any())).thenReturn(1);
+        when(cardRepository.findByIdAndUserId(fromId, userId)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.debitIfActiveAndSufficient(fromId, userId, amount)).thenReturn(0, 1);
+        when(cardBalanceStripes.fold(fromId)).thenReturn(BigDecimal.valueOf(50));
+
+        executor(CardTransferExecutor.Mode.ATOMIC).transfer(transfer(fromId, toId, 130), userId);
+
+        verify(cardRepository, times(2)).debitIfActiveAndSufficient(fromId, userId, amount);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void atomic_shouldNotFold_whenCardHasNoStripes() {
+        when(cardRepository.creditIfActive(any(), any(), any())).thenReturn(1);
+        when(cardRepository.findByIdAndUserId(fromId, userId)).thenReturn(Optional.of(fromCard));
+
+        assertThatThrownBy(() -> executor(CardTransferExecutor.Mode.ATOMIC)
+                .transfer(transfer(fromId, toId, 500), userId))
+                .isInstanceOf(InsufficientFundsException.class);
+        verify(cardBalanceStripes, never()).fold(any());
+    }
+
+    @Test
+    void lockOrder_shouldMatchPostgresUuidOrdering() {
+        UUID signedNegative = UUID.fromString("80000000-0000-0000-0000-000000000000");
+        UUID positive = UUID.fromString("7fffffff-0000-0000-0000-000000000000");
+
+        assertThat(signedNegative.compareTo(positive)).isNegative();
+        assertThat(CardTransferExecutor.LOCK_ORDER.compare(signedNegative, positive)).isPositive();
+    }
+
+    @Test
+    void pessimistic_shouldLockBothCardsInOneQuery() {
+        when(cardRepository.findAllByIdInAndUserIdForUpdate(List.of(fromId, toId), userId))
+                .thenReturn(List.of(toCard, fromCard));
+
+        executor(CardTransferExecutor.Mode.PESSIMISTIC).transfer(transfer(fromId, toId, 30), userId);
+
+        assertThat(fromCard.getBalance()).isEqualTo(Money.of(70));
+        assertThat(toCard.getBalance()).isEqualTo(Money.of(80));
+        verify(cardRepository).setLockTimeout("3000ms");
+        verify(cardRepository, never()).findByIdAndUserId(any(), any());
+        verify(cardRepository, times(2)).save(any(Card.class));
+        verify(cardLedgerService).recordTransfer(fromId, toId, Money.of(30).toBigDecimal());
+        verify(cardResponseCache).evictAfterCommit(fromId, toId);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void pessimistic_shouldCountStripes_whenCheckingFunds() {
+        fromCard.setStripedBalance(BigDecimal.valueOf(50));
+        when(cardRepository.findAllByIdInAndUserIdForUpdate(List.of(fromId, toId), userId))
+                .thenReturn(List.of(fromCard, toCard));
+
+        executor(CardTransferExecutor.Mode.PESSIMISTIC).transfer(transfer(fromId, toId, 130), userId);
+
+        assertThat(fromCard.getTotalBalance()).isEqualTo(Money.of(20));
+        assertThat(toCard.getBalance()).isEqualTo(Money.of(180));
+    }
+
+    @Test
+    void pessimistic_shouldLockCardOnce_whenSameCardUsed() {
+        when(cardRepository.findAllByIdInAndUserIdForUpdate(List.of(fromId), userId)).thenReturn(List.of(fromCard));
+
+        executor(CardTransferExecutor.Mode.PESSIMISTIC).transfer(transfer(fromId, fromId, 30), userId);
+
+        assertThat(fromCard.getBalance()).isEqualTo(Money.of(100));
+    }
+
+    @Test
+    void pessimistic_shouldThrowException_whenFromCardNotFound() {
+        when(cardRepository.findAllByIdInAndUserIdForUpdate(anyCollection(), eq(userId))).thenReturn(List.of());
+
+        assertThatThrownBy(() -> executor(CardTransferExecutor.Mode.PESSIMISTIC)
+                .transfer(transfer(fromId, toId, 50), userId))
+                .isInstanceOf(CardNotFoundException.class);
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void optimistic_shouldRetry_whenVersionConflictOnFlush() {
+        stubFindByIdAndUserId();
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, fromId))
+                .doNothing()
+                .when(transactionStatus).flush();
+
+        executor(CardTransferExecutor.Mode.OPTIMISTIC).transfer(transfer(fromId, toId, 30), userId);
+
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+        verify(cardRepository, never()).findAllByIdInAndUserIdForUpdate(any(), any());
+        assertThat(meterRegistry.get("app.transfer.conflicts").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("app.transfer.attempts").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void optimistic_shouldGiveUp_whenAttemptsExhausted() {
+        stubFindByIdAndUserId();
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, fromId))
+                .when(transactionStatus).flush();
+
+        assertThatThrownBy(() -> executor(CardTransferExecutor.Mode.OPTIMISTIC)
+                .transfer(transfer(fromId, toId, 30), userId))
+                .isInstanceOf(TransferConflictException.class);
+
+        verify(transactionManager, times(3)).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertThat(meterRegistry.get("app.transfer.retries.exhausted").counter().count()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(CardTransferExecutor.Mode.class)
+    void transfer_shouldRunOnAppliedInsideTransaction_beforeCommit(CardTransferExecutor.Mode mode) {
+        stubFindByIdAndUserId();
+        when(cardRepository.findAllByIdInAndUserIdForUpdate(anyCollection(), eq(userId)))
+                .thenReturn(List.of(fromCard, toCard));
+        when(cardRepository.debitIfActiveAndSufficient(any(), any(), any())).thenReturn(1);
+        when(cardRepository.creditIfActive(any(), any(), any())).thenReturn(1);
+        Runnable onApplied = mock(Runnable.class);
+
+        executor(mode).transfer(transfer(fromId, toId, 30), userId, onApplied);
+
+        InOrder inOrder = inOrder(cardLedgerService, onApplied, transactionManager);
+        inOrder.verify(cardLedgerService).recordTransfer(fromId, toId, Money.of(30).toBigDecimal());
+        inOrder.verify(onApplied).run();
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @ParameterizedTest
+    @EnumSource(CardTransferExecutor.Mode.class)
+    void transfer_shouldReportUnknownOutcome_whenCommitFails(CardTransferExecutor.Mode mode) {
+        stubFindByIdAndUserId();
+        when(cardRepository.findAllByIdInAndUserIdForUpdate(anyCollection(), eq(userId)))
+                .thenReturn(List.of(fromCard, toCard));
+        when(cardRepository.debitIfActiveAndSufficient(any(), any(), any())).thenReturn(1);
+        when(cardRepository.creditIfActive(any(), any(), any())).thenReturn(1);
+        doThrow(new TransactionSystemException("connection reset")).when(transactionManager).commit(any());
+
+        assertThatThrownBy(() -> executor(mode).transfer(transfer(fromId, toId, 30), userId))
+                .isInstanceOf(OperationOutcomeUnknownException.class)
+                .hasCauseInstanceOf(TransactionSystemException.class);
+
+        // Перевод мог примениться: оптимистический режим его не повторяет
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void optimistic_shouldNotRetry_businessErrors() {
+        stubFindByIdAndUserId();
+
+        assertThatThrownBy(() -> executor(CardTransferExecutor.Mode.OPTIMISTIC)
+                .transfer(transfer(fromId, toId, 500), userId))
+                .isInstanceOf(InsufficientFundsException.class);
+
+        verify(cardRepository, times(1)).findByIdAndUserId(fromId, userId);
+        verify(transactionManager, never()).commit(any());
+    }
+
+    private void stubFindByIdAndUserId() {
+        when(cardRepository.findByIdAndUserId(fromId, userId)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserId(toId, userId)).thenReturn(Optional.of(toCard));
+    }
+
+    private CardTransferExecutor executor(CardTransferExecutor.Mode mode) {
+        return new CardTransferExecutor(cardRepository, cardLedgerService, cardBalanceStripes, cardResponseCache,
+                transactionManager, meterRegistry, mode, Duration.ofSeconds(3), 3, Duration.ofMillis(1), Duration.ofMillis(2));
+    }
+
+    private Card card(UUID id, User user, long balance) {
+        return Card.builder()
+                .id(id)
+                .user(user)
+                .balance(Money.of(balance))
+                .status(CardStatus.ACTIVE)
+                .build();
+    }
+
+    private TransferRequest transfer(UUID from, UUID to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(from);
+        request.setToCardId(to);
+        request.setAmount(Money.of(amount));
+        return request;
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.OperationOutcomeUnknownException;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardTransferSequencerTest {
+
+    @Mock private CardBatchTransferExecutor cardBatchTransferExecutor;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private TransactionStatus transactionStatus;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID firstUserId = UUID.randomUUID();
+    private final UUID secondUserId = UUID.randomUUID();
+
+    private CardTransferSequencer sequencer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        sequencer = new CardTransferSequencer(cardBatchTransferExecutor, transactionManager, meterRegistry,
+                true, 1, 100, 10, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        sequencer.stop();
+    }
+
+    @Test
+    void submit_shouldCommitQueuedTransfersOfAllUsersInOneTransaction() throws Exception {
+        when(cardBatchTransferExecutor.applyIndependently(anyList(), eq(firstUserId)))
+                .thenReturn(Arrays.asList(null, new InsufficientFundsException()));
+        when(cardBatchTransferExecutor.applyIndependently(anyList(), eq(secondUserId)))
+                .thenReturn(Arrays.asList((RuntimeException) null));
+
+        // Переводы накапливаются до запуска полосы и попадают в один пакет
+        CompletableFuture<Void> first = sequencer.submit(transfer(10), firstUserId);
+        CompletableFuture<Void> second = sequencer.submit(transfer(20), secondUserId);
+        CompletableFuture<Void> third = sequencer.submit(transfer(30), firstUserId);
+        sequencer.start();
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> third.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(InsufficientFundsException.class);
+        verify(transactionManager, times(1)).commit(transactionStatus);
+        verify(cardBatchTransferExecutor).applyIndependently(
+                argThat((List<TransferRequest> transfers) -> transfers.size() == 2), eq(firstUserId));
+        assertThat(meterRegistry.get("app.transfer.sequencer.batch.size").summary().max()).isEqualTo(3);
+    }
+
+    @Test
+    void submit_shouldRunOnAppliedInBatchTransaction_onlyForAppliedTransfers() throws Exception {
+        when(cardBatchTransferExecutor.applyIndependently(anyList(), eq(firstUserId)))
+                .thenReturn(Arrays.asList(null, new InsufficientFundsException()));
+        Runnable appliedHook = mock(Runnable.class);
+        Runnable failedHook = mock(Runnable.class);
+
+        CompletableFuture<Void> applied = sequencer.submit(transfer(10), firstUserId, appliedHook);
+        CompletableFuture<Void> failed = sequencer.submit(transfer(20), firstUserId, failedHook);
+        sequencer.start();
+
+        applied.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(InsufficientFundsException.class);
+        InOrder inOrder = inOrder(appliedHook, transactionManager);
+        inOrder.verify(appliedHook).run();
+        inOrder.verify(transactionManager).commit(transactionStatus);
+        verifyNoInteractions(failedHook);
+    }
+
+    @Test
+    void submit_shouldRetryOneByOne_whenGroupCommitFails() throws Exception {
+        when(cardBatchTransferExecutor.applyIndependently(anyList(), eq(firstUserId)))
+                .thenReturn(Arrays.asList((RuntimeException) null));
+        when(cardBatchTransferExecutor.applyIndependently(anyList(), eq(secondUserId)))
+                .thenThrow(new PessimisticLockingFailureException("lock timeout"));
+
+        CompletableFuture<Void> first = sequencer.submit(transfer(10), firstUserId);
+        CompletableFuture<Void> second = sequencer.submit(transfer(20), secondUserId);
+        sequencer.start();
+
+        first.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(PessimisticLockingFailureException.class);
+        verify(cardBatchTransferExecutor, times(2)).applyIndependently(anyList(), eq(firstUserId));
+    }
+
+    @Test
+    void submit_shouldReportUnknownOutcome_andNotRetry_whenCommitItselfFails() {
+        when(cardBatchTransferExecutor.applyIndependently(anyList(), any()))
+                .thenReturn(Arrays.asList((RuntimeException) null));
+        doThrow(new TransactionSystemException("connection lost during commit"))
+                .when(transactionManager).commit(transactionStatus);
+
+        CompletableFuture<Void> first = sequencer.submit(transfer(10), firstUserId);
+        CompletableFuture<Void> second = sequencer.submit(transfer(20), secondUserId);
+        sequencer.start();
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(OperationOutcomeUnknownException.class)
+                .hasRootCauseInstanceOf(TransactionSystemException.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(OperationOutcomeUnknownException.class);
+        verify(cardBatchTransferExecutor, times(1)).applyIndependently(anyList(), eq(firstUserId));
+        verify(cardBatchTransferExecutor, times(1)).applyIndependently(anyList(), eq(secondUserId));
+    }
+
+    @Test
+    void submit_shouldFailWithOverload_andSkipTransfer_whenNotProcessedInTime() throws Exception {
+        CardTransferSequencer slow = new CardTransferSequencer(cardBatchTransferExecutor, transactionManager,
+                meterRegistry, true, 1, 100, 10, Duration.ofMillis(50));
+        try {
+            CompletableFuture<Void> timedOut = slow.submit(transfer(10), firstUserId);
+
+            assertThatThrownBy(() -> timedOut.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(ServiceOverloadedException.class);
+            when(cardBatchTransferExecutor.applyIndependently(anyList(), eq(secondUserId)))
+                    .thenReturn(Arrays.asList((RuntimeException) null));
+            slow.start();
+            slow.submit(transfer(20), secondUserId).get(5, TimeUnit.SECONDS);
+        } finally {
+            slow.stop();
+        }
+        verify(cardBatchTransferExecutor, never()).applyIndependently(anyList(), eq(firstUserId));
+    }
+
+    @Test
+    void submit_shouldReportUnknownOutcome_whenTimeoutFiresDuringGroupCommit() throws Exception {
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(cardBatchTransferExecutor.applyIndependently(anyList(), eq(firstUserId))).thenAnswer(invocation -> {
+            applying.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Arrays.asList((RuntimeException) null);
+        });
+        CardTransferSequencer slow = new CardTransferSequencer(cardBatchTransferExecutor, transactionManager,
+                meterRegistry, true, 1, 100, 10, Duration.ofMillis(200));
+        slow.start();
+        try {
+            CompletableFuture<Void> committing = slow.submit(transfer(10), firstUserId);
+            assertThat(applying.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // Перевод уже в пакете: таймаут не выдаёт его за неприменённый
+            assertThatThrownBy(() -> committing.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(OperationOutcomeUnknownException.class);
+            release.countDown();
+            verify(transactionManager, timeout(5000)).commit(transactionStatus);
+        } finally {
+            release.countDown();
+            slow.stop();
+        }
+    }
+
+    @Test
+    void submit_shouldReject_whenLaneQueueIsFull() {
+        for (int i = 0; i < 10; i++) {
+            sequencer.submit(transfer(1), firstUserId);
+        }
+
+        CompletableFuture<Void> rejected = sequencer.submit(transfer(1), firstUserId);
+
+        assertThat(rejected).isCompletedExceptionally();
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(ServiceOverloadedException.class);
+        assertThat(meterRegistry.get("app.transfer.sequencer.rejected").counter().count()).isEqualTo(1);
+    }
+
+    private TransferRequest transfer(long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(UUID.randomUUID());
+        request.setToCardId(UUID.randomUUID());
+        request.setAmount(Money.of(amount));
+        return request;
+    }
+}
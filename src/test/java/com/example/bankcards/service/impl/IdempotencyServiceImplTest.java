@@ -0,0 +1,321 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.entity.Money;
+import com.example.bankcards.exception.IdempotencyKeyInProgressException;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidIdempotencyKeyException;
+import com.example.bankcards.exception.OperationOutcomeUnknownException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceImplTest {
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final UUID userId = UUID.randomUUID();
+    private IdempotencyServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new IdempotencyServiceImpl(idempotencyKeyRepository, new ObjectMapper(), new SimpleMeterRegistry(),
+                Duration.ofHours(24), Duration.ofMillis(200), Duration.ofSeconds(30), Duration.ofSeconds(10), 100,
+                Duration.ofMinutes(10));
+    }
+
+    @Test
+    void execute_shouldRunActionOnce_andReplayFromMemory() {
+        claimSucceeds();
+        AtomicInteger calls = new AtomicInteger();
+
+        String first = service.execute(userId, "key-1", "op", transfer(10), String.class,
+                recordResult -> "done-" + calls.incrementAndGet());
+        String second = service.execute(userId, "key-1", "op", transfer(10), String.class,
+                recordResult -> "done-" + calls.incrementAndGet());
+
+        assertThat(first).isEqualTo("done-1");
+        assertThat(second).isEqualTo("done-1");
+        assertThat(calls).hasValue(1);
+        verify(idempotencyKeyRepository, times(1)).tryClaim(any(), any(), any(), any(), any(), any());
+        verify(idempotencyKeyRepository).complete(any(), eq(IdempotencyKey.Status.IN_PROGRESS),
+                eq(IdempotencyKey.Status.COMPLETED), eq("\"done-1\""), any());
+    }
+
+    @Test
+    void execute_shouldReject_whenKeyReusedForDifferentRequest() {
+        claimSucceeds();
+        service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> "done");
+
+        assertThatThrownBy(() -> service.execute(userId, "key-1", "op", transfer(20), String.class,
+                recordResult -> "other"))
+                .isInstanceOf(IdempotencyKeyMismatchException.class);
+    }
+
+    @Test
+    void execute_shouldReplayStoredResult_whenCompletedByAnotherInstance() {
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), hash.capture(), any(), any())).thenReturn(0);
+        when(idempotencyKeyRepository.findByUserIdAndKey(userId, "key-1"))
+                .thenAnswer(invocation -> Optional.of(IdempotencyKey.builder()
+                        .requestHash(hash.getValue())
+                        .status(IdempotencyKey.Status.COMPLETED)
+                        .responseBody("\"stored\"")
+                        .build()));
+
+        String result = service.execute(userId, "key-1", "op", transfer(10), String.class,
+                recordResult -> fail("must not run"));
+
+        assertThat(result).isEqualTo("stored");
+    }
+
+    @Test
+    void execute_shouldTimeOut_whenAnotherInstanceStillProcessing() {
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), hash.capture(), any(), any())).thenReturn(0);
+        when(idempotencyKeyRepository.findByUserIdAndKey(userId, "key-1"))
+                .thenAnswer(invocation -> Optional.of(IdempotencyKey.builder()
+                        .requestHash(hash.getValue())
+                        .status(IdempotencyKey.Status.IN_PROGRESS)
+                        .build()));
+
+        assertThatThrownBy(() -> service.execute(userId, "key-1", "op", transfer(10), String.class,
+                recordResult -> "done"))
+                .isInstanceOf(IdempotencyKeyInProgressException.class);
+    }
+
+    @Test
+    void execute_shouldReleaseKey_whenActionFails() {
+        claimSucceeds();
+
+        assertThatThrownBy(() -> service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> {
+            throw new InsufficientFundsException();
+        })).isInstanceOf(InsufficientFundsException.class);
+
+        verify(idempotencyKeyRepository).release(any(), eq(IdempotencyKey.Status.IN_PROGRESS));
+        verify(idempotencyKeyRepository, never()).complete(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void execute_shouldCompleteKeyInsideAction_whenActionRecordsResult() {
+        claimSucceeds();
+
+        String result = service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> {
+            recordResult.accept("done");
+            // Ключ завершается до возврата из действия, то есть в его транзакции
+            verify(idempotencyKeyRepository).complete(any(), eq(IdempotencyKey.Status.IN_PROGRESS),
+                    eq(IdempotencyKey.Status.COMPLETED), eq("\"done\""), any());
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        verify(idempotencyKeyRepository, times(1)).complete(any(), eq(IdempotencyKey.Status.IN_PROGRESS),
+                eq(IdempotencyKey.Status.COMPLETED), eq("\"done\""), any());
+    }
+
+    @Test
+    void execute_shouldFailInsideAction_whenClaimWasTakenOver() {
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), any(), any(), any())).thenReturn(1);
+        when(idempotencyKeyRepository.complete(any(), any(), any(), any(), any())).thenReturn(0);
+        AtomicBoolean appliedAfterRecord = new AtomicBoolean();
+
+        assertThatThrownBy(() -> service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> {
+            recordResult.accept("done");
+            appliedAfterRecord.set(true);
+            return "done";
+        })).isInstanceOf(IdempotencyKeyInProgressException.class);
+
+        assertThat(appliedAfterRecord).isFalse();
+    }
+
+    @Test
+    void execute_shouldMarkKeyOutcomeUnknown_insteadOfReleasing() {
+        claimSucceeds();
+        when(idempotencyKeyRepository.complete(any(), eq(IdempotencyKey.Status.IN_PROGRESS),
+                eq(IdempotencyKey.Status.OUTCOME_UNKNOWN), any(), any())).thenReturn(1);
+
+        assertThatThrownBy(() -> service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> {
+            throw new OperationOutcomeUnknownException(new IllegalStateException("connection reset"));
+        })).isInstanceOf(OperationOutcomeUnknownException.class);
+
+        verify(idempotencyKeyRepository, never()).release(any(), any());
+        verify(idempotencyKeyRepository).complete(any(), eq(IdempotencyKey.Status.IN_PROGRESS),
+                eq(IdempotencyKey.Status.OUTCOME_UNKNOWN), isNull(), any());
+    }
+
+    @Test
+    void execute_shouldReturnStoredResult_whenCommitWithUnknownOutcomeSucceeded() {
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), hash.capture(), any(), any())).thenReturn(1);
+        when(idempotencyKeyRepository.findByUserIdAndKey(userId, "key-1"))
+                .thenAnswer(invocation -> Optional.of(IdempotencyKey.builder()
+                        .requestHash(hash.getValue())
+                        .status(IdempotencyKey.Status.COMPLETED)
+                        .responseBody("\"done\"")
+                        .build()));
+
+        String result = service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> {
+            throw new OperationOutcomeUnknownException(new IllegalStateException("connection reset"));
+        });
+
+        assertThat(result).isEqualTo("done");
+        verify(idempotencyKeyRepository, never()).release(any(), any());
+    }
+
+    @Test
+    void execute_shouldRejectRetry_whenOutcomeUnknown() {
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), hash.capture(), any(), any())).thenReturn(0);
+        when(idempotencyKeyRepository.findByUserIdAndKey(userId, "key-1"))
+                .thenAnswer(invocation -> Optional.of(IdempotencyKey.builder()
+                        .requestHash(hash.getValue())
+                        .status(IdempotencyKey.Status.OUTCOME_UNKNOWN)
+                        .build()));
+
+        assertThatThrownBy(() -> service.execute(userId, "key-1", "op", transfer(10), String.class,
+                recordResult -> fail("must not run")))
+                .isInstanceOf(OperationOutcomeUnknownException.class);
+    }
+
+    @Test
+    void execute_shouldMakeConcurrentDuplicateWaitForFirstResult() throws Exception {
+        claimSucceeds();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> {
+                    calls.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return "done";
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> duplicate = CompletableFuture.supplyAsync(() ->
+                service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> {
+                    calls.incrementAndGet();
+                    return "again";
+                }));
+
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(duplicate.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void execute_shouldClaimKeyForLeaseOnly_andKeepCompletedResultForTtl() {
+        ArgumentCaptor<LocalDateTime> claimedUntil = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> storedUntil = ArgumentCaptor.forClass(LocalDateTime.class);
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), any(), any(), claimedUntil.capture())).thenReturn(1);
+        when(idempotencyKeyRepository.complete(any(), any(), any(), any(), any())).thenReturn(1);
+        LocalDateTime before = LocalDateTime.now();
+
+        service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> "done");
+
+        verify(idempotencyKeyRepository).complete(any(), any(), any(), any(), storedUntil.capture());
+        assertThat(claimedUntil.getValue()).isBetween(before.plusSeconds(30), LocalDateTime.now().plusSeconds(30));
+        assertThat(storedUntil.getValue()).isAfter(before.plusHours(23));
+    }
+
+    @Test
+    void renewLeases_shouldExtendOnlyKeysRunningOnThisInstance() throws Exception {
+        ArgumentCaptor<UUID> claimId = ArgumentCaptor.forClass(UUID.class);
+        when(idempotencyKeyRepository.tryClaim(claimId.capture(), any(), any(), any(), any(), any())).thenReturn(1);
+        when(idempotencyKeyRepository.complete(any(), any(), any(), any(), any())).thenReturn(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() ->
+                service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> {
+                    started.countDown();
+                    await(release);
+                    return "done";
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        service.renewLeases();
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        service.renewLeases();
+
+        verify(idempotencyKeyRepository, times(1))
+                .extendLeases(eq(List.of(claimId.getValue())), eq(IdempotencyKey.Status.IN_PROGRESS), any());
+    }
+
+    @Test
+    void execute_shouldStopWaitingForLocalDuplicate_afterWaitTimeout() throws Exception {
+        claimSucceeds();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                service.execute(userId, "key-1", "op", transfer(10), String.class, recordResult -> {
+                    started.countDown();
+                    await(release);
+                    return "done";
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            assertThatThrownBy(() -> service.execute(userId, "key-1", "op", transfer(10), String.class,
+                    recordResult -> "again"))
+                    .isInstanceOf(IdempotencyKeyInProgressException.class);
+        } finally {
+            release.countDown();
+        }
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+    }
+
+    @Test
+    void execute_shouldRejectTooLongKey() {
+        assertThatThrownBy(() -> service.execute(userId, "k".repeat(256), "op", transfer(10), String.class,
+                recordResult -> "x"))
+                .isInstanceOf(InvalidIdempotencyKeyException.class);
+    }
+
+    private void claimSucceeds() {
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), any(), any(), any())).thenReturn(1);
+        when(idempotencyKeyRepository.complete(any(), eq(IdempotencyKey.Status.IN_PROGRESS),
+                eq(IdempotencyKey.Status.COMPLETED), any(), any())).thenReturn(1);
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private TransferRequest transfer(long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(UUID.fromString("00000000-0000-0000-0000-000000000001"));
+        request.setToCardId(UUID.fromString("00000000-0000-0000-0000-000000000002"));
+        request.setAmount(Money.of(amount));
+        return request;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.UserRole;
+import com.example.bankcards.exception.AuthenticationException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.AppUserDetails;
+import com.example.bankcards.security.JwtServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenServiceImplTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private JwtServiceImpl jwtService;
+
+    @InjectMocks
+    private RefreshTokenServiceImpl service;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(service, "refreshTokenExpiration", Duration.ofDays(30));
+        user = User.builder()
+                .id(UUID.randomUUID())
+                .email("user@mail.com")
+                .password("encoded")
+                .role(UserRole.ROLE_USER)
+                .build();
+        when(userRepository.getReferenceById(user.getId())).thenReturn(user);
+    }
+
+    @Test
+    void issue_shouldStoreOnlyTokenHash() {
+        String rawToken = service.issue(user.getId());
+
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+
+        assertThat(rawToken).isNotBlank();
+        assertThat(captor.getValue().getTokenHash()).hasSize(64).isNotEqualTo(rawToken);
+        assertThat(captor.getValue().getUser()).isSameAs(user);
+    }
+
+    @Test
+    void refresh_shouldRotateToken() {
+        RefreshToken current = token(null, LocalDateTime.now().plusDays(1));
+        when(refreshTokenRepository.findByTokenHashForUpdate(anyString())).thenReturn(Optional.of(current));
+        when(jwtService.generateJwtToken(any(AppUserDetails.class))).thenReturn("jwt-token");
+
+        AuthResponse response = service.refresh("raw-token");
+
+        assertThat(response.getToken()).isEqualTo("jwt-token");
+        assertThat(response.getRefreshToken()).isNotBlank().isNotEqualTo("raw-token");
+        assertThat(current.getRevokedAt()).isNotNull();
+        verify(refreshTokenRepository).save(argThat((RefreshToken t) -> t.getFamilyId().equals(current.getFamilyId())));
+    }
+
+    @Test
+    void refresh_shouldRevokeFamily_whenTokenReused() {
+        RefreshToken reused = token(LocalDateTime.now().minusMinutes(1), LocalDateTime.now().plusDays(1));
+        when(refreshTokenRepository.findByTokenHashForUpdate(anyString())).thenReturn(Optional.of(reused));
+
+        assertThatThrownBy(() -> service.refresh("raw-token"))
+                .isInstanceOf(AuthenticationException.class);
+
+        verify(refreshTokenRepository).revokeFamily(eq(reused.getFamilyId()), any(LocalDateTime.class));
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void refresh_shouldThrowException_whenTokenExpired() {
+        RefreshToken expired = token(null, LocalDateTime.now().minusSeconds(1));
+        when(refreshTokenRepository.findByTokenHashForUpdate(anyString())).thenReturn(Optional.of(expired));
+
+        assertThatThrownBy(() -> service.refresh("raw-token"))
+                .isInstanceOf(AuthenticationException.class);
+
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void refresh_shouldThrowException_whenTokenUnknown() {
+        when(refreshTokenRepository.findByTokenHashForUpdate(anyString())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.refresh("unknown"))
+                .isInstanceOf(AuthenticationException.class);
+    }
+
+    private RefreshToken token(LocalDateTime revokedAt, LocalDateTime expiresAt) {
+        return RefreshToken.builder()
+                .id(UUID.randomUUID())
+                .user(user)
+                .tokenHash("hash")
+                .familyId(UUID.randomUUID())
+                .createdAt(LocalDateTime.now().minusDays(1))
+                .expiresAt(expiresAt)
+                .revokedAt(revokedAt)
+                .build();
+    }
+}
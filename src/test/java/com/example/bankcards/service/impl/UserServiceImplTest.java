@@ -6,7 +6,10 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.UserRole;
 import com.example.bankcards.exception.EmailAlreadyExistsException;
 import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserDetailsServiceImpl;
+import com.example.bankcards.service.RefreshTokenService;
 import com.example.bankcards.util.UserMapperFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,9 +26,24 @@ class UserServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CardRepository cardRepository;
+
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Mock
+    private CardResponseCache cardResponseCache;
+
     @InjectMocks
     private UserServiceImpl service;
 
@@ -105,11 +123,15 @@ class UserServiceImplTest {
 
         assertThat(updated).isNotNull();
         assertThat(updated.getEmail()).isEqualTo("new@mail.com");
+        assertThat(existingUser.getTokenVersion()).isEqualTo(1);
 
         verify(userRepository).findById(userId);
         verify(userRepository).findByEmail("new@mail.com");
         verify(passwordEncoder).encode("newpass");
         verify(userRepository).save(any(User.class));
+        verify(userDetailsService).evictUser(userId);
+        verify(cacheInvalidationBus).publish(CacheInvalidationBus.Topic.USER, userId);
+        verify(refreshTokenService).revokeAll(userId);
     }
 
     @Test
@@ -152,13 +174,19 @@ class UserServiceImplTest {
     @Test
     void deleteUser_shouldDelete_whenUserExists() {
         UUID userId = UUID.randomUUID();
+        List<UUID> cardIds = List.of(UUID.randomUUID(), UUID.randomUUID());
 
         when(userRepository.existsById(userId)).thenReturn(true);
+        when(cardRepository.findIdsByUserId(userId)).thenReturn(cardIds);
 
         service.deleteUser(userId);
 
-        verify(userRepository).existsById(userId);
-        verify(userRepository).deleteById(userId);
+        InOrder inOrder = inOrder(cardRepository, userRepository);
+        inOrder.verify(cardRepository).findIdsByUserId(userId);
+        inOrder.verify(userRepository).deleteById(userId);
+        verify(cardResponseCache).evictAfterCommit(cardIds);
+        verify(userDetailsService).evictUser(userId);
+        verify(cacheInvalidationBus).publish(CacheInvalidationBus.Topic.USER, userId);
     }
 
     @Test